@@ -5,19 +5,29 @@
  * @time 23:41
  */
 
-import javax.swing.tree.TreeNode;
+package rrp;
+
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class CSVParser implements AutoCloseable {
 
-class CSVParser {
+    // Already compiled trees by path to .csv with modification time of the file they were compiled from,
+    // compiled trees are read-only so they are shared between threads
+    private static final ConcurrentHashMap<String, Map.Entry<Long, RuleTree>> rules = new ConcurrentHashMap<>();
 
     // Input/Output file reader/writer
     private final IO files;
 
     // List of all "rule" elements
     private ArrayList<List<String>> elements;
-    // How types and nodes correspond with each other
+    // How types and nodes correspond with each other, first node of the type with content is its definition
     private HashMap<String, TreeNode> types;
+    // Nodes that only name their type and take content from its definition
+    private Set<TreeNode> references;
     // Number of last row read
     private int last;
 
@@ -35,10 +45,33 @@ class CSVParser {
     }
 
     /**
-     * Closes output file
+     * Returns compiled tree of rules from .csv file, file is read and printed to .json once per path
+     * and read again when it's modified
+     *
+     * @param pathToInput  path to input (.csv format)
+     * @param pathToOutput path to output (.json format)
+     * @return compiled tree
+     */
+    static RuleTree loadRules(String pathToInput, String pathToOutput) {
+        long modified = new File(pathToInput).lastModified();
+        return rules.compute(pathToInput, (path, compiled) -> {
+            if (compiled != null && compiled.getKey() == modified) {
+                return compiled;
+            }
+            try (CSVParser parser = new CSVParser(path, pathToOutput)) {
+                TreeNode root = parser.convertFromCSV();
+                parser.printToJSON(root);
+                return new AbstractMap.SimpleImmutableEntry<>(modified, RuleTree.compile(root));
+            }
+        }).getValue();
+    }
+
+    /**
+     * Closes input and output files
      */
-    void close() {
-        files.out.close();
+    @Override
+    public void close() {
+        files.handle.close();
     }
 
     /**
@@ -120,6 +153,7 @@ class CSVParser {
      */
     private TreeNode buildTree() {
         types = new HashMap<>();
+        references = Collections.newSetFromMap(new IdentityHashMap<>());
         TreeNode root = new TreeNode("Response", "root", true, true);
         while (last < elements.size()) {
             TreeNode next = parseNode();
@@ -130,9 +164,54 @@ class CSVParser {
             }
         }
 
+        // Types may be used before they are declared, so they are applied after all rows are read
+        resolveTypes(root, new HashMap<>(), Collections.newSetFromMap(new IdentityHashMap<>()));
         return root;
     }
 
+    /**
+     * Gives every type reference content of the type definition
+     * Definitions are resolved once and become immutable, all references share their params and children
+     *
+     * @param node    current node
+     * @param state   false for types being resolved, true for resolved ones
+     * @param visited nodes already resolved
+     */
+    private void resolveTypes(TreeNode node, HashMap<String, Boolean> state, Set<TreeNode> visited) {
+        if (!visited.add(node)) {
+            return;
+        }
+        if (references.contains(node)) {
+            TreeNode template = types.get(node.type);
+            if (template == null) {
+                Logger.getLogger(CSVParser.class.getName()).log(Level.WARNING, "Type " + node.type + " of " + node.path + " is never declared");
+            } else if (state.get(node.type) == Boolean.FALSE) {
+                Logger.getLogger(CSVParser.class.getName()).log(Level.SEVERE, "Type " + node.type + " of " + node.path + " contains itself");
+            } else {
+                resolveTypes(template, state, visited);
+                node.params = template.params;
+                node.children = template.children;
+            }
+            return;
+        }
+
+        boolean definition = types.get(node.type) == node;
+        if (definition) {
+            state.put(node.type, false);
+        }
+        for (TreeNode next : node.params) {
+            resolveTypes(next, state, visited);
+        }
+        for (TreeNode next : node.children) {
+            resolveTypes(next, state, visited);
+        }
+        if (definition) {
+            state.put(node.type, true);
+            node.params = Collections.unmodifiableList(node.params);
+            node.children = Collections.unmodifiableList(node.children);
+        }
+    }
+
     /**
      * Extracts type name (if present) based on description in the row
      *
@@ -171,17 +250,16 @@ class CSVParser {
             }
         }
 
-        // Corrects node if it's type was declared before
+        // Tag without content takes it from the type definition, tag with content may define the type
         if (!Objects.equals(nodeType, "")) {
             cur.type = nodeType;
-            if (types.containsKey(nodeType)) {
-                if (cur.children.size() == 0 && cur.params.size() == 0) {
-                    TreeNode template = types.get(nodeType);
-                    cur.params.addAll(template.params);
-                    cur.children.addAll(template.children);
-                }
+            if (!isNode) {
+                return cur;
+            }
+            if (cur.children.size() == 0 && cur.params.size() == 0) {
+                references.add(cur);
             } else {
-                types.put(nodeType, cur);
+                types.putIfAbsent(nodeType, cur);
             }
         }
         return cur;
@@ -244,14 +322,15 @@ class CSVParser {
 
     /**
      * Node class which represents one row in .csv file
+     * Used while building, rendering works with {@link RuleTree} compiled from it
      */
-    class TreeNode {
+    static class TreeNode {
         // path in .xml, name in .pdf, type name
         private String path, name, type;
         // is tag or not, is required or not
         private boolean node, req;
-        // list of parameters, list of children
-        private ArrayList<TreeNode> params, children;
+        // list of parameters, list of children; shared with other nodes of the same type after types are resolved
+        private List<TreeNode> params, children;
 
         TreeNode(String path, String name, boolean node, boolean req) {
             this.path = path;
@@ -279,11 +358,11 @@ class CSVParser {
             return req;
         }
 
-        ArrayList<TreeNode> getParams() {
+        List<TreeNode> getParams() {
             return params;
         }
 
-        ArrayList<TreeNode> getChildren() {
+        List<TreeNode> getChildren() {
             return children;
         }
 
@@ -292,16 +371,47 @@ class CSVParser {
         }
     }
 
+    /**
+     * Closing action of the files, refers only to them so parser itself can be collected
+     *
+     * @param in  input file, may be null
+     * @param out output file, may be null
+     * @return action closing both
+     */
+    private static AutoCloseable closing(Reader in, Writer out) {
+        return () -> {
+            IOException failure = null;
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        };
+    }
+
     // Class that allows fast read from input and fast print to output
     private class IO {
         StringTokenizer st;
         BufferedReader in;
         PrintWriter out;
-
-        IO() {
-            in = new BufferedReader(new InputStreamReader(System.in));
-            out = new PrintWriter(System.out);
-        }
+        // Closes both files, closed by the cleaner if parser is dropped without close()
+        Resources.Handle handle;
 
         IO(String in, String out) {
             try {
@@ -310,6 +420,7 @@ class CSVParser {
             } catch (FileNotFoundException e) {
                 e.printStackTrace();
             }
+            handle = Resources.track(CSVParser.this, closing(this.in, this.out));
         }
 
         String nextLine() {
@@ -0,0 +1,478 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 29-Sep-2017
+ * @time 19:34
+ */
+
+package rrp;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.xpath.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class IterParser {
+
+    // Document builders are expensive to look up, every thread keeps its own one per limits and resets it between documents
+    private static final ThreadLocal<HashMap<XmlLimits, DocumentBuilder>> builders = ThreadLocal.withInitial(HashMap::new);
+    // SAX readers for projected documents, kept like document builders
+    private static final ThreadLocal<HashMap<XmlLimits, XMLReader>> readers = ThreadLocal.withInitial(HashMap::new);
+    // Factory of handlers that build tree from SAX events
+    private static final ThreadLocal<SAXTransformerFactory> transformerFactories = ThreadLocal.withInitial(IterParser::newTransformerFactory);
+    // XPath factory lookup goes through service loader, so it is done once per thread
+    private static final ThreadLocal<XPathFactory> xPathFactories = ThreadLocal.withInitial(XPathFactory::newInstance);
+    // Parsers of current thread by namespaces they were created with
+    private static final ThreadLocal<HashMap<List<Object>, IterParser>> parsers = ThreadLocal.withInitial(HashMap::new);
+    // Parse errors are thrown instead of being printed to System.err
+    private static final ErrorHandler failFast = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException exception) {
+        }
+
+        @Override
+        public void error(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+    };
+
+    // Object that allows access to DOM node by it's path in document
+    private final XPath xPath;
+    // Already compiled expressions, parser is used by one thread only so plain map is enough
+    private final HashMap<String, XPathExpression> expressions;
+    // Caps on parsed documents
+    private final XmlLimits limits;
+
+    /**
+     * Constructor with namespaces uri's, documents are parsed with default limits
+     *
+     * @param uriMap all namespaces uri's
+     */
+    IterParser(final Map<String, String> uriMap) {
+        this(uriMap, XmlLimits.DEFAULT);
+    }
+
+    /**
+     * Constructor with namespaces uri's and limits of parsed documents
+     *
+     * @param uriMap all namespaces uri's
+     * @param limits caps on size, depth and attributes count
+     */
+    IterParser(final Map<String, String> uriMap, XmlLimits limits) {
+        this.limits = limits;
+        xPath = xPathFactories.get().newXPath();
+        expressions = new HashMap<>();
+        xPath.setNamespaceContext(new NamespaceContext() {
+            @Override
+            public String getNamespaceURI(String prefix) {
+                return uriMap.getOrDefault(prefix, XMLConstants.NULL_NS_URI);
+            }
+
+            // Not required
+            @Override
+            public String getPrefix(String uri) {
+                throw new UnsupportedOperationException();
+            }
+
+            // Not required
+            @Override
+            public Iterator getPrefixes(String uri) {
+                throw new UnsupportedOperationException();
+            }
+        });
+
+    }
+
+    /**
+     * Returns parser owned by current thread, it's created once per thread and namespaces set
+     *
+     * @param uriMap all namespaces uri's
+     * @return parser with default limits, must not be passed to other threads
+     */
+    static IterParser forCurrentThread(Map<String, String> uriMap) {
+        return forCurrentThread(uriMap, XmlLimits.DEFAULT);
+    }
+
+    /**
+     * Returns parser owned by current thread, it's created once per thread, namespaces set and limits
+     *
+     * @param uriMap all namespaces uri's
+     * @param limits caps on size, depth and attributes count
+     * @return parser, must not be passed to other threads
+     */
+    static IterParser forCurrentThread(Map<String, String> uriMap, XmlLimits limits) {
+        return parsers.get().computeIfAbsent(Arrays.asList(uriMap, limits), key -> new IterParser(uriMap, limits));
+    }
+
+    /**
+     * Creates namespace aware document builder that refuses DTDs and external entities
+     * and stops as soon as any of the limits is exceeded
+     *
+     * @param limits caps on depth and attributes count
+     * @return builder or null if parser can't be configured
+     */
+    private static DocumentBuilder newDocumentBuilder(XmlLimits limits) {
+        try {
+            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+            domFactory.setNamespaceAware(true);
+            domFactory.setXIncludeAware(false);
+            domFactory.setExpandEntityReferences(false);
+            domFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            domFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            domFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            domFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            domFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            domFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            domFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            try {
+                // Limits of JDK built-in parser, other implementations fall back to size limit only
+                domFactory.setAttribute("http://www.oracle.com/xml/jaxp/properties/maxElementDepth", limits.maxDepth);
+                domFactory.setAttribute("http://www.oracle.com/xml/jaxp/properties/elementAttributeLimit", limits.maxAttributes);
+            } catch (IllegalArgumentException e) {
+                Logger.getLogger(IterParser.class.getName()).log(Level.WARNING, "Depth and attribute limits are not supported by " + domFactory.getClass().getName(), e);
+            }
+            return domFactory.newDocumentBuilder();
+        } catch (ParserConfigurationException ex) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Creates namespace aware SAX reader configured like {@link #newDocumentBuilder(XmlLimits)}
+     *
+     * @param limits caps on depth and attributes count
+     * @return reader or null if parser can't be configured
+     */
+    private static XMLReader newReader(XmlLimits limits) {
+        try {
+            SAXParserFactory saxFactory = SAXParserFactory.newInstance();
+            saxFactory.setNamespaceAware(true);
+            saxFactory.setXIncludeAware(false);
+            saxFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            saxFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            saxFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            saxFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            saxFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            XMLReader reader = saxFactory.newSAXParser().getXMLReader();
+            try {
+                reader.setProperty("http://www.oracle.com/xml/jaxp/properties/maxElementDepth", limits.maxDepth);
+                reader.setProperty("http://www.oracle.com/xml/jaxp/properties/elementAttributeLimit", limits.maxAttributes);
+            } catch (SAXException e) {
+                Logger.getLogger(IterParser.class.getName()).log(Level.WARNING, "Depth and attribute limits are not supported by " + reader.getClass().getName(), e);
+            }
+            reader.setErrorHandler(failFast);
+            return reader;
+        } catch (ParserConfigurationException | SAXException ex) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+
+    private static SAXTransformerFactory newTransformerFactory() {
+        SAXTransformerFactory factory = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (TransformerConfigurationException e) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.WARNING, null, e);
+        }
+        return factory;
+    }
+
+    /**
+     * Creates .xml-file tree representation
+     * Parsing fails fast if the file doesn't fit into the limits of this parser
+     *
+     * @param pathToXmlFile path to .xml
+     * @return tree file representation or null if file can't be parsed
+     */
+    Document createXmlDocument(String pathToXmlFile) {
+        Document doc = null;
+        DocumentBuilder builder = builders.get().computeIfAbsent(limits, IterParser::newDocumentBuilder);
+        if (builder == null) {
+            return null;
+        }
+        File file = new File(pathToXmlFile);
+        try {
+            if (file.length() > limits.maxBytes) {
+                throw new IOException(pathToXmlFile + " exceeds " + limits.maxBytes + " bytes");
+            }
+            try (InputStream in = limits.limit(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+                InputSource source = new InputSource(in);
+                source.setSystemId(file.toURI().toString());
+                builder.setErrorHandler(failFast);
+                doc = builder.parse(source);
+            }
+        } catch (SAXException | IOException ex) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.SEVERE, "Unable to parse " + pathToXmlFile, ex);
+        } finally {
+            builder.reset();
+        }
+        return doc;
+    }
+
+    /**
+     * Creates .xml-file tree representation that contains only projected elements and attributes,
+     * everything else is dropped while parsing
+     *
+     * @param pathToXmlFile path to .xml
+     * @param projection    elements and attributes that are read later
+     * @return tree file representation or null if file can't be parsed
+     */
+    Document createProjectedDocument(String pathToXmlFile, XmlProjection projection) {
+        DocumentBuilder builder = builders.get().computeIfAbsent(limits, IterParser::newDocumentBuilder);
+        XMLReader reader = readers.get().computeIfAbsent(limits, IterParser::newReader);
+        if (builder == null || reader == null) {
+            return null;
+        }
+        File file = new File(pathToXmlFile);
+        try {
+            if (file.length() > limits.maxBytes) {
+                throw new IOException(pathToXmlFile + " exceeds " + limits.maxBytes + " bytes");
+            }
+            Document doc = builder.newDocument();
+            TransformerHandler handler = transformerFactories.get().newTransformerHandler();
+            handler.setResult(new DOMResult(doc));
+            XMLFilterImpl filter = projection.filter(reader);
+            filter.setContentHandler(handler);
+            // Filter becomes error handler of the reader, it passes errors on only if it has its own
+            filter.setErrorHandler(failFast);
+            try (InputStream in = limits.limit(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+                InputSource source = new InputSource(in);
+                source.setSystemId(file.toURI().toString());
+                filter.parse(source);
+            }
+            return doc;
+        } catch (SAXException | IOException | TransformerConfigurationException ex) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.SEVERE, "Unable to parse " + pathToXmlFile, ex);
+            return null;
+        } finally {
+            // Reader is kept by the thread, its handlers refer to the filter and through it to the whole document
+            reader.setContentHandler(null);
+            reader.setDTDHandler(null);
+            reader.setEntityResolver(null);
+            reader.setErrorHandler(failFast);
+            builder.reset();
+        }
+    }
+
+    /**
+     * Creates .xml-file representation whose tags are materialised only when they are visited,
+     * see {@link LazyXmlDocument}; tags must be expanded before their children are read,
+     * malformed content of a tag is reported by {@link LazyXmlDocument.MalformedXmlException} when it's expanded
+     *
+     * @param pathToXmlFile path to .xml
+     * @return document with root element only or null if file can't be indexed
+     */
+    Document createLazyDocument(String pathToXmlFile) {
+        DocumentBuilder builder = builders.get().computeIfAbsent(limits, IterParser::newDocumentBuilder);
+        if (builder == null) {
+            return null;
+        }
+        try {
+            return LazyXmlDocument.parse(pathToXmlFile, limits, builder.newDocument());
+        } catch (IOException | LazyXmlDocument.MalformedXmlException ex) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.SEVERE, "Unable to parse " + pathToXmlFile, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Returns compiled expression, every expression is compiled once per parser
+     *
+     * @param xpathExpression expression
+     * @return compiled expression
+     * @throws XPathExpressionException if expression is malformed
+     */
+    private XPathExpression compile(String xpathExpression) throws XPathExpressionException {
+        XPathExpression expr = expressions.get(xpathExpression);
+        if (expr == null) {
+            expr = xPath.compile(xpathExpression);
+            expressions.put(xpathExpression, expr);
+        }
+        return expr;
+    }
+
+    /**
+     * Returns list of nodes that correspond to the expression
+     *
+     * @param doc             .xml tree root
+     * @param xpathExpression expression which nodes refer to
+     * @return list of nodes
+     */
+    private List<String> getListOfValues(Document doc, String xpathExpression) {
+        List<String> nodeValues = new ArrayList<>();
+        try {
+            NodeList nodes = (NodeList) compile(xpathExpression).evaluate(doc, XPathConstants.NODESET);
+            for (int i = 0; i < nodes.getLength(); i++) {
+                nodeValues.add(nodes.item(i).getNodeName() + " " + nodes.item(i).getNodeValue());
+            }
+        } catch (XPathExpressionException e) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.SEVERE, null, e);
+        }
+        return nodeValues;
+    }
+
+    /**
+     * Returns list of nodes located at this path
+     *
+     * @param doc             .xml tree root
+     * @param xpathExpression path to nodes
+     * @return list of nodes
+     */
+    NodeList getNode(Document doc, String xpathExpression) {
+        NodeList node = null;
+        try {
+            node = (NodeList) compile(xpathExpression).evaluate(doc, XPathConstants.NODESET);
+        } catch (XPathExpressionException e) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.SEVERE, null, e);
+        }
+        return node;
+    }
+
+    /**
+     * Return concatenation of all values of nodes corresponding to this path
+     *
+     * @param doc             .xml tree root
+     * @param xpathExpression path to nodes
+     * @return values
+     */
+    String getNodeValue(Document doc, String xpathExpression) {
+        StringBuilder nodeValue = new StringBuilder();
+        try {
+            XPathExpression expr = compile(xpathExpression);
+            Object result = expr.evaluate(doc, XPathConstants.NODESET);
+            NodeList nodes = (NodeList) result;
+            for (int i = 0; i < nodes.getLength(); i++) {
+                nodeValue.append(valueOf(nodes.item(i)));
+                if (i < nodes.getLength() - 1) {
+                    nodeValue.append(", ");
+                }
+            }
+        } catch (XPathExpressionException e) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.SEVERE, null, e);
+        }
+        return nodeValue.toString();
+    }
+
+    /**
+     * Returns value of attribute or text node, or text content of tag like {@link Node#getTextContent()}
+     * Single text child is returned as it is, text is copied only if tag has several text parts;
+     * tag with nested tags falls back to their concatenated text content
+     *
+     * @param node attribute, text or tag
+     * @return value, empty if there is no text
+     */
+    static CharSequence valueOf(Node node) {
+        if (node.getNodeType() != Node.ELEMENT_NODE) {
+            String value = node.getNodeValue();
+            return value == null ? "" : value;
+        }
+        LazyXmlDocument.expand(node);
+        CharSequence value = "";
+        StringBuilder parts = null;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                // Text of nested tags is a part of the value
+                LazyXmlDocument.expandAll(node);
+                return node.getTextContent();
+            }
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                if (value.length() == 0) {
+                    value = child.getNodeValue();
+                } else {
+                    // Text split by comments or CDATA sections
+                    if (parts == null) {
+                        parts = new StringBuilder(value);
+                        value = parts;
+                    }
+                    parts.append(child.getNodeValue());
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Converts date string between two dates formats
+     *
+     * @param f1 input format
+     * @param f2 output format
+     * @param dt date string in input format
+     * @return date string in output format
+     */
+    static String formatDate(String f1, String f2, String dt) {
+        try {
+            if (dt != null && !dt.equals("")) {
+                SimpleDateFormat sdfSource = new SimpleDateFormat(f1);
+                Date date = sdfSource.parse(dt);
+                SimpleDateFormat sdfDestination = new SimpleDateFormat(f2);
+                dt = sdfDestination.format(date);
+            }
+        } catch (ParseException e) {
+            Logger.getLogger(IterParser.class.getName()).log(Level.SEVERE, null, e);
+        }
+        return dt;
+    }
+
+    /**
+     * Start point for local debugging
+     *
+     * @param args cmd arguments
+     */
+    public static void main(String[] args) throws IOException {
+        final Map<String, String> myUriMaps = new HashMap<String, String>() {{
+            put("xml", XMLConstants.XML_NS_URI);
+            put("ns1", "urn://x-artefacts-fns-vipul-tosmv-ru/311-14/4.0.5");
+            put("fnst", "urn://x-artefacts-fns/vipul-types/4.0.5");
+        }};
+
+        final IterParser parser = new IterParser(myUriMaps);
+
+        final Document document = parser.createXmlDocument("files/egrul.xml");
+        document.getDocumentElement().normalize();
+
+        try (CSVParser csvParser = new CSVParser("files/egrul.csv", "files/egrul.json")) {
+            csvParser.printToJSON(csvParser.convertFromCSV());
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16);
+        new XmlDumper(out, XmlDumper.Format.TEXT).dump(document.getDocumentElement());
+        List<String> allValues = parser.getListOfValues(document, "//*/@*|//*/text()[string-length(normalize-space(.))!=0]");
+        for (final String s : allValues) {
+            out.write(s);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+}
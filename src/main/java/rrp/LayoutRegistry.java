@@ -0,0 +1,70 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 21:05
+ */
+
+package rrp;
+
+import java.util.*;
+
+/**
+ * Layouts known for every register type, each layout is a separate .csv-file with its own rules
+ * Full extract is registered by default, abbreviated and internal variants are registered by callers
+ */
+final class LayoutRegistry {
+
+    // Layout every register has
+    static final String FULL = "full";
+
+    // Register type refers to layouts by name, every layout is [path to .csv, path to .json]
+    private static final Map<String, LinkedHashMap<String, String[]>> layouts = new HashMap<>();
+
+    static {
+        register("egrul", FULL, "files/egrul.csv", "files/egrul.json");
+        register("egrip", FULL, "files/egrip.csv", "files/egrip.json");
+    }
+
+    private LayoutRegistry() {
+    }
+
+    /**
+     * Adds layout or replaces layout with the same name
+     *
+     * @param register     register type, egrul or egrip
+     * @param layout       layout name
+     * @param pathToInput  path to .csv with layout rules
+     * @param pathToOutput path to .json the rules are dumped into
+     */
+    static synchronized void register(String register, String layout, String pathToInput, String pathToOutput) {
+        layouts.computeIfAbsent(register, key -> new LinkedHashMap<>()).put(layout, new String[]{pathToInput, pathToOutput});
+    }
+
+    /**
+     * @param register register type
+     * @return names of layouts in the order they were registered
+     */
+    static synchronized List<String> layouts(String register) {
+        return new ArrayList<>(layouts.getOrDefault(register, new LinkedHashMap<>()).keySet());
+    }
+
+    /**
+     * Returns rules of the layout, they are compiled once and recompiled when .csv-file changes
+     *
+     * @param register register type
+     * @param layout   layout name
+     * @return layout rules
+     * @throws IllegalArgumentException if layout isn't registered
+     */
+    static RuleTree rules(String register, String layout) {
+        String[] paths;
+        synchronized (LayoutRegistry.class) {
+            paths = layouts.getOrDefault(register, new LinkedHashMap<>()).get(layout);
+        }
+        if (paths == null) {
+            throw new IllegalArgumentException("Layout " + layout + " is not registered for " + register);
+        }
+        return CSVParser.loadRules(paths[0], paths[1]);
+    }
+}
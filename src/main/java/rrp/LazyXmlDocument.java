@@ -0,0 +1,601 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 15:10
+ */
+
+package rrp;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Document that is materialised on demand
+ * One fast scan over the bytes of .xml indexes offsets of all elements, after that only elements that are visited
+ * become DOM nodes: tag is expanded (its children are created) by {@link #expand(Node)} when it's visited first time.
+ * Content of subtrees that are never visited is never decoded
+ */
+final class LazyXmlDocument {
+
+    // Key of user data of tags that are not expanded yet
+    private static final String PENDING = "lazy.pending";
+    private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z0-9._-]+)[\"']");
+
+    private final byte[] data;
+    private final Charset charset;
+    private final XmlLimits limits;
+    // Offsets of '<', of the end of start tag and of the start of end tag (end of start tag for empty element)
+    private int[] start, tagEnd, contentEnd;
+    // Tree structure by element index, -1 if there is no such element
+    private int[] firstChild, nextSibling;
+    private int count;
+    private final Document doc;
+
+    /**
+     * Malformed content found while tag is expanded, that is after the document was returned by {@link #parse}
+     */
+    static final class MalformedXmlException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MalformedXmlException(String message) {
+            super(message);
+        }
+    }
+
+    // Tag that is not expanded yet
+    private static final class Pending {
+        final LazyXmlDocument owner;
+        final int index;
+
+        Pending(LazyXmlDocument owner, int index) {
+            this.owner = owner;
+            this.index = index;
+        }
+    }
+
+    private LazyXmlDocument(byte[] data, XmlLimits limits, Document doc) throws IOException {
+        this.data = data;
+        this.limits = limits;
+        this.doc = doc;
+        charset = detectCharset();
+        int capacity = Math.max(16, data.length / 64);
+        start = new int[capacity];
+        tagEnd = new int[capacity];
+        contentEnd = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        scan();
+        doc.appendChild(materialise(0, null));
+    }
+
+    /**
+     * Indexes .xml-file and creates document with root element only
+     *
+     * @param pathToXmlFile path to .xml
+     * @param limits        caps on size, depth and attributes count
+     * @param doc           empty document to fill
+     * @return document, its elements are expanded by {@link #expand(Node)}
+     * @throws IOException if file can't be read, is malformed or exceeds the limits
+     */
+    static Document parse(String pathToXmlFile, XmlLimits limits, Document doc) throws IOException {
+        File file = new File(pathToXmlFile);
+        if (file.length() > limits.maxBytes) {
+            throw new IOException(pathToXmlFile + " exceeds " + limits.maxBytes + " bytes");
+        }
+        return new LazyXmlDocument(Files.readAllBytes(file.toPath()), limits, doc).doc;
+    }
+
+    /**
+     * Creates children of the tag if it belongs to lazy document and isn't expanded yet, does nothing otherwise
+     *
+     * @param node tag
+     */
+    static void expand(Node node) {
+        Object pending = node.getUserData(PENDING);
+        if (pending != null) {
+            node.setUserData(PENDING, null, null);
+            ((Pending) pending).owner.expand((Element) node, ((Pending) pending).index);
+        }
+    }
+
+    /**
+     * Expands the tag and all tags below it, needed when whole text content of the tag is read
+     *
+     * @param node tag
+     */
+    static void expandAll(Node node) {
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            expand(node);
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                expandAll(child);
+            }
+        }
+    }
+
+    /**
+     * Creates children of the element, text between them is kept only if it isn't whitespace
+     */
+    private void expand(Element element, int index) {
+        int gap = tagEnd[index];
+        for (int child = firstChild[index]; child >= 0; child = nextSibling[child]) {
+            if (!isWhitespace(gap, start[child])) {
+                element.appendChild(doc.createTextNode(text(gap, start[child])));
+            }
+            element.appendChild(materialise(child, element));
+            // Empty element written as start and end tag has the same bounds as self-closing one
+            gap = data[tagEnd[child] - 2] == '/' ? tagEnd[child] : indexOf(contentEnd[child], '>') + 1;
+        }
+        if (!isWhitespace(gap, contentEnd[index])) {
+            element.appendChild(doc.createTextNode(text(gap, contentEnd[index])));
+        }
+    }
+
+    private boolean isWhitespace(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isSpace(data[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first element with the name in document order, like "//" in XPath, tags around it are expanded
+     * so it can be reached by XPath, tags inside it are left as they are
+     *
+     * @param doc  document, ordinary documents are only searched
+     * @param name namespace and local name of the element
+     * @return element or null if there is no such element
+     */
+    static Element find(Document doc, QName name) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(doc.getDocumentElement());
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (name.getLocalPart().equals(node.getLocalName()) && name.getNamespaceURI().equals(Objects.toString(node.getNamespaceURI(), ""))) {
+                return (Element) node;
+            }
+            expand(node);
+            for (Node child = node.getLastChild(); child != null; child = child.getPreviousSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    stack.push(child);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Expands tags along the path of local names, so they can be reached by XPath
+     *
+     * @param from       tag the path starts from, tags of ordinary documents are left as they are
+     * @param localNames local names of tags below it
+     */
+    static void expandPath(Node from, String... localNames) {
+        ArrayList<Node> level = new ArrayList<>();
+        level.add(from);
+        for (String localName : localNames) {
+            ArrayList<Node> next = new ArrayList<>();
+            for (Node node : level) {
+                expand(node);
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (child.getNodeType() == Node.ELEMENT_NODE && localName.equals(child.getLocalName())) {
+                        next.add(child);
+                    }
+                }
+            }
+            level = next;
+        }
+        for (Node node : level) {
+            expand(node);
+        }
+    }
+
+    /**
+     * Reads encoding from .xml declaration, only encodings compatible with ASCII can be scanned by bytes
+     */
+    private Charset detectCharset() throws IOException {
+        if (data.length >= 2 && ((data[0] & 0xff) == 0xfe || (data[0] & 0xff) == 0xff || data[0] == 0 || data[1] == 0)) {
+            throw new IOException("UTF-16 documents are not supported in lazy mode");
+        }
+        int from = data.length >= 3 && (data[0] & 0xff) == 0xef && (data[1] & 0xff) == 0xbb && (data[2] & 0xff) == 0xbf ? 3 : 0;
+        if (startsWith(from, "<?xml")) {
+            int end = indexOf(from, "?>");
+            Matcher matcher = ENCODING.matcher(new String(data, from, Math.max(0, end - from), StandardCharsets.US_ASCII));
+            if (matcher.find()) {
+                return Charset.forName(matcher.group(1));
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Indexes every element, checks that tags are balanced and the document fits into depth limit
+     */
+    private void scan() throws IOException {
+        int[] stack = new int[limits.maxDepth + 1], lastChild = new int[limits.maxDepth + 1];
+        int depth = 0, pos = 0;
+        boolean rootClosed = false;
+        while (true) {
+            pos = indexOf(pos, '<');
+            if (pos < 0) {
+                break;
+            }
+            if (startsWith(pos, "<?")) {
+                pos = skip(pos, "?>");
+            } else if (startsWith(pos, "<!--")) {
+                pos = skip(pos, "-->");
+            } else if (startsWith(pos, "<![CDATA[")) {
+                pos = skip(pos, "]]>");
+            } else if (startsWith(pos, "<!")) {
+                throw new IOException("DOCTYPE is not allowed");
+            } else if (startsWith(pos, "</")) {
+                int close = indexOf(pos, '>');
+                if (depth == 0 || close < 0) {
+                    throw new IOException("Unexpected end tag at " + pos);
+                }
+                int open = stack[--depth];
+                if (!sameName(start[open] + 1, pos + 2)) {
+                    throw new IOException("End tag at " + pos + " doesn't match its start tag");
+                }
+                contentEnd[open] = pos;
+                rootClosed = depth == 0;
+                pos = close + 1;
+            } else {
+                if (rootClosed) {
+                    throw new IOException("Content after root element at " + pos);
+                }
+                if (depth == limits.maxDepth) {
+                    throw new IOException("Element depth exceeds " + limits.maxDepth);
+                }
+                int close = tagEnd(pos);
+                int index = add(pos, close + 1);
+                if (depth > 0) {
+                    int parent = stack[depth - 1];
+                    if (lastChild[depth - 1] < 0) {
+                        firstChild[parent] = index;
+                    } else {
+                        nextSibling[lastChild[depth - 1]] = index;
+                    }
+                    lastChild[depth - 1] = index;
+                } else if (index > 0) {
+                    throw new IOException("Several root elements");
+                }
+                if (data[close - 1] == '/') {
+                    // Empty element
+                    contentEnd[index] = close + 1;
+                    rootClosed = depth == 0;
+                } else {
+                    stack[depth] = index;
+                    lastChild[depth] = -1;
+                    depth++;
+                }
+                pos = close + 1;
+            }
+        }
+        if (depth > 0 || count == 0) {
+            throw new IOException("Unexpected end of document");
+        }
+    }
+
+    private int add(int tagStart, int end) {
+        if (count == start.length) {
+            int capacity = count * 2;
+            start = Arrays.copyOf(start, capacity);
+            tagEnd = Arrays.copyOf(tagEnd, capacity);
+            contentEnd = Arrays.copyOf(contentEnd, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+        }
+        start[count] = tagStart;
+        tagEnd[count] = end;
+        firstChild[count] = -1;
+        nextSibling[count] = -1;
+        return count++;
+    }
+
+    /**
+     * Creates element with its attributes, leaf elements get their text as well
+     *
+     * @param index  element index
+     * @param parent parent element that resolves namespace prefixes, null for root
+     * @return element
+     */
+    private Element materialise(int index, Element parent) {
+        int pos = start[index] + 1, end = tagEnd[index] - 1;
+        if (data[end - 1] == '/') {
+            end--;
+        }
+        int nameEnd = pos;
+        while (nameEnd < end && !isSpace(data[nameEnd])) {
+            nameEnd++;
+        }
+        String qName = decode(pos, nameEnd);
+
+        // Attributes, namespace declarations are applied before other names are resolved
+        ArrayList<String[]> attributes = new ArrayList<>();
+        HashMap<String, String> declared = new HashMap<>();
+        pos = nameEnd;
+        while (true) {
+            while (pos < end && isSpace(data[pos])) {
+                pos++;
+            }
+            if (pos >= end) {
+                break;
+            }
+            int eq = pos;
+            while (eq < end && data[eq] != '=') {
+                eq++;
+            }
+            int quote = eq + 1;
+            while (quote < end && isSpace(data[quote])) {
+                quote++;
+            }
+            int close = quote + 1;
+            while (close < end && data[close] != data[quote]) {
+                close++;
+            }
+            if (eq >= end || close >= end || (data[quote] != '"' && data[quote] != '\'')) {
+                throw new MalformedXmlException("Malformed attribute of " + qName);
+            }
+            int nameTo = eq;
+            while (nameTo > pos && isSpace(data[nameTo - 1])) {
+                nameTo--;
+            }
+            String name = decode(pos, nameTo), value = decodeValue(quote + 1, close, true);
+            if (name.equals("xmlns")) {
+                declared.put("", value);
+            } else if (name.startsWith("xmlns:")) {
+                declared.put(name.substring(6), value);
+            }
+            attributes.add(new String[]{name, value});
+            pos = close + 1;
+        }
+        if (attributes.size() > limits.maxAttributes) {
+            throw new MalformedXmlException("Element " + qName + " has more than " + limits.maxAttributes + " attributes");
+        }
+
+        Element element = doc.createElementNS(namespace(prefix(qName), declared, parent), qName);
+        for (String[] attribute : attributes) {
+            String name = attribute[0];
+            if (name.equals("xmlns") || name.startsWith("xmlns:")) {
+                element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, attribute[1]);
+            } else if (name.indexOf(':') < 0) {
+                element.setAttributeNS(null, name, attribute[1]);
+            } else {
+                element.setAttributeNS(namespace(prefix(name), declared, parent), name, attribute[1]);
+            }
+        }
+
+        if (firstChild[index] >= 0) {
+            element.setUserData(PENDING, new Pending(this, index), null);
+        } else if (contentEnd[index] > tagEnd[index]) {
+            element.appendChild(doc.createTextNode(text(tagEnd[index], contentEnd[index])));
+        }
+        return element;
+    }
+
+    private static String prefix(String qName) {
+        int colon = qName.indexOf(':');
+        return colon < 0 ? "" : qName.substring(0, colon);
+    }
+
+    private static String namespace(String prefix, HashMap<String, String> declared, Element parent) {
+        if (prefix.equals("xml")) {
+            return XMLConstants.XML_NS_URI;
+        }
+        String uri = declared.get(prefix);
+        if (uri == null && parent != null) {
+            uri = parent.lookupNamespaceURI(prefix.isEmpty() ? null : prefix);
+        }
+        return uri == null || uri.isEmpty() ? null : uri;
+    }
+
+    /**
+     * Decodes text content of leaf element, CDATA sections are taken as they are and comments are skipped
+     */
+    private String text(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        int pos = from;
+        while (pos < to) {
+            int lt = indexOf(pos, '<');
+            if (lt < 0 || lt >= to) {
+                text.append(decodeValue(pos, to, false));
+                break;
+            }
+            text.append(decodeValue(pos, lt, false));
+            if (startsWith(lt, "<![CDATA[")) {
+                int close = indexOf(lt, "]]>");
+                if (close < 0 || close >= to) {
+                    throw new MalformedXmlException("Unterminated CDATA section at " + lt);
+                }
+                text.append(decode(lt + 9, close));
+                pos = close + 3;
+            } else if (startsWith(lt, "<!--") || startsWith(lt, "<?")) {
+                String terminator = startsWith(lt, "<!--") ? "-->" : "?>";
+                int close = indexOf(lt, terminator);
+                if (close < 0 || close >= to) {
+                    throw new MalformedXmlException("Unterminated markup at " + lt);
+                }
+                pos = close + terminator.length();
+            } else {
+                throw new MalformedXmlException("Unexpected tag in text at " + lt);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Decodes characters and replaces predefined and numeric entities
+     *
+     * @param attribute attribute values have their whitespace normalised
+     */
+    private String decodeValue(int from, int to, boolean attribute) {
+        String raw = decode(from, to);
+        if (raw.indexOf('&') < 0 && (!attribute || !hasWhitespace(raw))) {
+            return raw;
+        }
+        StringBuilder value = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char ch = raw.charAt(i);
+            if (ch == '&') {
+                int semicolon = raw.indexOf(';', i);
+                if (semicolon < 0) {
+                    throw new MalformedXmlException("Malformed entity in " + raw);
+                }
+                String entity = raw.substring(i + 1, semicolon);
+                if (entity.equals("lt")) {
+                    value.append('<');
+                } else if (entity.equals("gt")) {
+                    value.append('>');
+                } else if (entity.equals("amp")) {
+                    value.append('&');
+                } else if (entity.equals("quot")) {
+                    value.append('"');
+                } else if (entity.equals("apos")) {
+                    value.append('\'');
+                } else if (entity.startsWith("#x")) {
+                    value.appendCodePoint(codePoint(entity, 2, 16));
+                } else if (entity.startsWith("#")) {
+                    value.appendCodePoint(codePoint(entity, 1, 10));
+                } else {
+                    throw new MalformedXmlException("Undeclared entity &" + entity + ";");
+                }
+                i = semicolon;
+            } else if (attribute && (ch == '\t' || ch == '\n')) {
+                value.append(' ');
+            } else {
+                value.append(ch);
+            }
+        }
+        return value.toString();
+    }
+
+    private static boolean hasWhitespace(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\t' || ch == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes characters, line ends "\r\n" and "\r" are normalised to "\n" like by any XML parser
+     */
+    private String decode(int from, int to) {
+        String value = new String(data, from, to - from, charset);
+        return value.indexOf('\r') < 0 ? value : value.replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    /**
+     * Returns position of '>' closing the start tag, quoted attribute values may contain '>'
+     */
+    private int tagEnd(int pos) throws IOException {
+        byte quote = 0;
+        for (int i = pos + 1; i < data.length; i++) {
+            byte b = data[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+        }
+        throw new IOException("Unclosed tag at " + pos);
+    }
+
+    /**
+     * Compares names of start tag and end tag
+     */
+    private boolean sameName(int open, int close) {
+        while (open < data.length && close < data.length) {
+            boolean openEnd = isSpace(data[open]) || data[open] == '>' || data[open] == '/';
+            boolean closeEnd = isSpace(data[close]) || data[close] == '>';
+            if (openEnd || closeEnd) {
+                return openEnd && closeEnd;
+            }
+            if (data[open++] != data[close++]) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private int skip(int pos, String terminator) throws IOException {
+        int end = indexOf(pos, terminator);
+        if (end < 0) {
+            throw new IOException("Unterminated markup at " + pos);
+        }
+        return end + terminator.length();
+    }
+
+    private int indexOf(int from, char ch) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(int from, String value) {
+        for (int i = indexOf(from, value.charAt(0)); i >= 0; i = indexOf(i + 1, value.charAt(0))) {
+            if (startsWith(i, value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int pos, String value) {
+        if (pos + value.length() > data.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (data[pos + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int codePoint(String entity, int digits, int radix) {
+        try {
+            int codePoint = Integer.parseInt(entity.substring(digits), radix);
+            // Only characters allowed in XML documents
+            if (codePoint == '\t' || codePoint == '\n' || codePoint == '\r' || codePoint >= 0x20 && codePoint <= 0xd7ff
+                    || codePoint >= 0xe000 && codePoint <= 0xfffd || codePoint >= 0x10000 && codePoint <= 0x10ffff) {
+                return codePoint;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new MalformedXmlException("Malformed character reference &" + entity + ";");
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
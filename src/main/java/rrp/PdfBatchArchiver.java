@@ -0,0 +1,289 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 10:20
+ */
+
+package rrp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders many documents straight into one .zip-archive without temporary files
+ * Documents are rendered in parallel into memory buffers, archive itself is written sequentially
+ */
+class PdfBatchArchiver implements AutoCloseable {
+
+    /**
+     * Receives notification after every processed document
+     */
+    interface ProgressListener {
+        void onProgress(int done, int total, String entryName, RenderResult result);
+    }
+
+    private final RenderScheduler scheduler;
+    // Scheduler is created by this archiver and stopped when it's closed
+    private final boolean ownsScheduler;
+    // Number of documents rendered at once
+    private final int threads;
+    // Entries are written in input order or as soon as they are ready
+    private final boolean ordered;
+    private ProgressListener progress;
+
+    /**
+     * Constructor with renderer and parallelism settings, archiver starts its own workers
+     * and must be closed to stop them
+     *
+     * @param renderer renderer of single document
+     * @param threads  number of worker threads
+     * @param ordered  keep entries in the order of inputs
+     */
+    PdfBatchArchiver(PdfRenderer renderer, int threads, boolean ordered) {
+        this(new RenderScheduler(renderer, threads), threads, ordered, true);
+    }
+
+    /**
+     * Constructor with shared scheduler that keeps rendering within heap budget
+     *
+     * @param scheduler scheduler of rendering tasks
+     * @param threads   number of documents queued at once, 1 renders in the calling thread
+     * @param ordered   keep entries in the order of inputs
+     */
+    PdfBatchArchiver(RenderScheduler scheduler, int threads, boolean ordered) {
+        this(scheduler, threads, ordered, false);
+    }
+
+    private PdfBatchArchiver(RenderScheduler scheduler, int threads, boolean ordered, boolean ownsScheduler) {
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.threads = Math.max(1, threads);
+        this.ordered = ordered;
+        progress = (done, total, entryName, result) -> {
+        };
+    }
+
+    void setProgressListener(ProgressListener progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Stops worker threads if archiver started them, shared scheduler is left to its owner
+     */
+    @Override
+    public void close() {
+        if (ownsScheduler) {
+            scheduler.close();
+        }
+    }
+
+    /**
+     * Renders all inputs into the archive, stream is finished but left open
+     *
+     * @param inputs paths to .xml-files
+     * @param target archive output stream
+     * @return number of entries written
+     * @throws IOException if archive can't be written
+     */
+    int archive(List<String> inputs, OutputStream target) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(target);
+        // .pdf content streams are already compressed
+        zip.setLevel(Deflater.BEST_SPEED);
+        List<String> names = entryNames(inputs);
+        int written = threads == 1 ? archiveSequentially(inputs, names, zip) : archiveInParallel(inputs, names, zip);
+        zip.finish();
+        return written;
+    }
+
+    /**
+     * Renders documents one by one in the calling thread, each into a memory buffer that is copied into its entry
+     * once rendering succeeds; only one document is held in memory at a time
+     */
+    private int archiveSequentially(List<String> inputs, List<String> names, ZipOutputStream zip) throws IOException {
+        int written = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            // Writer puts .pdf header as soon as document is opened, so document failing later would leave
+            // broken entry that can't be removed from the archive
+            Entry entry = renderInPlace(inputs.get(i), names.get(i));
+            if (write(entry, zip)) {
+                written++;
+            }
+            progress.onProgress(i + 1, inputs.size(), entry.name, entry.result);
+        }
+        return written;
+    }
+
+    /**
+     * Renders documents with the scheduler, only a bounded window of buffers is kept in memory
+     */
+    private int archiveInParallel(List<String> inputs, List<String> names, ZipOutputStream zip) throws IOException {
+        BlockingQueue<Future<Entry>> completion = new LinkedBlockingQueue<>();
+        ArrayDeque<Future<Entry>> pending = new ArrayDeque<>();
+        int window = threads * 2, next = 0, done = 0, written = 0;
+        try {
+            while (done < inputs.size()) {
+                while (next < inputs.size() && pending.size() < window) {
+                    final String input = inputs.get(next), name = names.get(next);
+                    CompletableFuture<Entry> future = scheduler.submit(input, renderer -> render(renderer, input, name));
+                    if (!ordered) {
+                        // Ordered mode takes futures from pending only, completion queue would keep their buffers
+                        future.whenComplete((entry, e) -> completion.add(future));
+                    }
+                    pending.add(future);
+                    next++;
+                }
+
+                Future<Entry> future;
+                if (ordered) {
+                    future = pending.poll();
+                } else {
+                    future = completion.take();
+                    pending.remove(future);
+                }
+                Entry entry = future.get();
+                if (write(entry, zip)) {
+                    written++;
+                }
+                progress.onProgress(++done, inputs.size(), entry.name, entry.result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Archiving interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Rendering failed", e.getCause());
+        } finally {
+            for (Future<Entry> future : pending) {
+                future.cancel(false);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Renders one document in the calling thread within the budget of the scheduler
+     */
+    private Entry renderInPlace(String input, String name) {
+        try {
+            return scheduler.call(input, renderer -> render(renderer, input, name));
+        } catch (Exception e) {
+            Logger.getLogger(PdfBatchArchiver.class.getName()).log(Level.SEVERE, "Unable to render " + input, e);
+            return new Entry(name, null, RenderResult.failed(e.getClass().getSimpleName()));
+        }
+    }
+
+    /**
+     * Renders one document into memory buffer
+     *
+     * @param renderer renderer chosen by the scheduler
+     * @param input    path to .xml
+     * @param name     entry name
+     * @return entry with content or without it if rendering failed
+     */
+    private static Entry render(PdfRenderer renderer, String input, String name) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        try {
+            RenderResult result = renderer.render(input, buffer);
+            if (result.hasOutput()) {
+                return new Entry(name, buffer, result);
+            }
+            Logger.getLogger(PdfBatchArchiver.class.getName()).log(Level.WARNING, "Nothing rendered for " + input + ": " + result);
+            return new Entry(name, null, result);
+        } catch (IOException e) {
+            Logger.getLogger(PdfBatchArchiver.class.getName()).log(Level.SEVERE, "Unable to render " + input, e);
+            return new Entry(name, null, RenderResult.failed("io"));
+        } catch (RuntimeException e) {
+            Logger.getLogger(PdfBatchArchiver.class.getName()).log(Level.SEVERE, "Unable to render " + input, e);
+            return new Entry(name, null, RenderResult.failed(e.getClass().getSimpleName()));
+        }
+    }
+
+    /**
+     * Writes content of the entry into the archive and drops it, so the buffer isn't kept by a completed future
+     *
+     * @param entry rendered document
+     * @param zip   archive
+     * @return whether entry had content
+     * @throws IOException if archive can't be written
+     */
+    private static boolean write(Entry entry, ZipOutputStream zip) throws IOException {
+        if (entry.content == null) {
+            return false;
+        }
+        zip.putNextEntry(new ZipEntry(entry.name));
+        entry.content.writeTo(zip);
+        zip.closeEntry();
+        entry.content = null;
+        return true;
+    }
+
+    /**
+     * Builds unique .pdf entry name for every input
+     *
+     * @param inputs paths to .xml-files
+     * @return entry names in the order of inputs
+     */
+    static List<String> entryNames(List<String> inputs) {
+        List<String> names = new ArrayList<>(inputs.size());
+        HashMap<String, Integer> used = new HashMap<>();
+        for (String input : inputs) {
+            String name = input.substring(Math.max(input.lastIndexOf('/'), input.lastIndexOf('\\')) + 1);
+            if (name.toLowerCase().endsWith(".xml")) {
+                name = name.substring(0, name.length() - 4);
+            }
+            int count = used.merge(name, 1, Integer::sum);
+            names.add(count == 1 ? name + ".pdf" : name + "-" + count + ".pdf");
+        }
+        return names;
+    }
+
+    // Rendered document waiting to be written
+    private static class Entry {
+        final String name;
+        // Rendered .pdf, dropped once it's written
+        ByteArrayOutputStream content;
+        final RenderResult result;
+
+        Entry(String name, ByteArrayOutputStream content, RenderResult result) {
+            this.name = name;
+            this.content = content;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Start point for bulk requests
+     *
+     * @param args register type (egrul or egrip), path to .zip, paths to .xml-files
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: PdfBatchArchiver <egrul|egrip> <output.zip> <input.xml>...");
+            return;
+        }
+        String pathToFont = "files/times-new-roman.ttf";
+        PdfRenderer renderer = Objects.equals(args[0], "egrip") ? PdfCreatorEgrip.renderer(pathToFont) : PdfCreatorEgrul.renderer(pathToFont);
+        PdfBatchArchiver archiver = new PdfBatchArchiver(renderer, Runtime.getRuntime().availableProcessors(), true);
+        TreeMap<String, Integer> reasons = new TreeMap<>();
+        archiver.setProgressListener((done, total, entryName, result) -> {
+            reasons.merge(result.getReason(), 1, Integer::sum);
+            System.err.println(done + "/" + total + " " + entryName + " " + result);
+        });
+
+        try (archiver; OutputStream out = new BufferedOutputStream(Resources.openOutput(Paths.get(args[1])), 1 << 16)) {
+            int written = archiver.archive(Arrays.asList(args).subList(2, args.length), out);
+            System.err.println(written + " documents archived " + reasons);
+        }
+        System.err.println(Resources.metrics());
+    }
+}
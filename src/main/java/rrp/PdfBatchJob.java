@@ -0,0 +1,461 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 18:05
+ */
+
+package rrp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders many documents into separate .pdf-files and survives crashes
+ * Every started and finished document is written to append-only journal, outputs appear atomically
+ * (temporary file and rename). On restart finished documents are skipped, documents that were in flight are
+ * rendered again one by one before the others, so the one that takes the process down is the last one started;
+ * document that crashed too many times is quarantined
+ */
+class PdfBatchJob implements AutoCloseable {
+
+    // Journal records
+    private static final String RUN = "RUN", START = "START", DONE = "DONE", FAIL = "FAIL", QUARANTINE = "QUARANTINE";
+
+    private final RenderScheduler scheduler;
+    // Scheduler is created by this job and stopped when it's closed
+    private final boolean ownsScheduler;
+    private final Path outputDir, quarantineDir;
+    private final Path journalPath;
+    // Number of attempts after which document is quarantined
+    private final int maxAttempts;
+
+    /**
+     * Result of the run
+     */
+    static class Summary {
+        final AtomicInteger rendered = new AtomicInteger(), skipped = new AtomicInteger(),
+                failed = new AtomicInteger(), quarantined = new AtomicInteger();
+        // Final result of every document processed in this run by its reason
+        final Map<String, AtomicInteger> reasons = new ConcurrentSkipListMap<>();
+
+        void count(RenderResult result) {
+            reasons.computeIfAbsent(result.getReason(), key -> new AtomicInteger()).incrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return "rendered " + rendered + ", skipped " + skipped + ", failed " + failed + ", quarantined " + quarantined
+                    + " " + reasons;
+        }
+    }
+
+    // State of one input restored from journal
+    private static class State {
+        // Failed attempts and crashes charged to the document
+        int attempts;
+        String output, hash;
+        boolean quarantined;
+        // Started and never finished, that is in flight when the process stopped
+        boolean suspect;
+    }
+
+    /**
+     * Constructor with renderer, output directory and retry settings, job starts its own workers
+     * and must be closed to stop them
+     *
+     * @param renderer    renderer of single document
+     * @param outputDir   directory for .pdf-files, journal and quarantine
+     * @param threads     number of worker threads
+     * @param maxAttempts number of attempts after which document is quarantined
+     */
+    PdfBatchJob(PdfRenderer renderer, Path outputDir, int threads, int maxAttempts) {
+        this(new RenderScheduler(renderer, threads), outputDir, maxAttempts, true);
+    }
+
+    /**
+     * Constructor with shared scheduler that keeps rendering within heap budget
+     *
+     * @param scheduler   scheduler of rendering tasks
+     * @param outputDir   directory for .pdf-files, journal and quarantine
+     * @param maxAttempts number of attempts after which document is quarantined
+     */
+    PdfBatchJob(RenderScheduler scheduler, Path outputDir, int maxAttempts) {
+        this(scheduler, outputDir, maxAttempts, false);
+    }
+
+    private PdfBatchJob(RenderScheduler scheduler, Path outputDir, int maxAttempts, boolean ownsScheduler) {
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.outputDir = outputDir;
+        this.quarantineDir = outputDir.resolve("quarantine");
+        this.journalPath = outputDir.resolve("journal.log");
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Stops worker threads if job started them, shared scheduler is left to its owner
+     */
+    @Override
+    public void close() {
+        if (ownsScheduler) {
+            scheduler.close();
+        }
+    }
+
+    /**
+     * Renders all inputs that are not finished yet
+     *
+     * @param inputs paths to .xml-files
+     * @return summary of the run
+     * @throws IOException if journal or output directory can't be used
+     */
+    Summary run(List<String> inputs) throws IOException {
+        Files.createDirectories(outputDir);
+        Map<String, State> states = readJournal();
+        List<String> names = PdfBatchArchiver.entryNames(inputs);
+        Summary summary = new Summary();
+
+        try (Journal journal = new Journal(journalPath)) {
+            journal.append(RUN);
+            // Documents in flight at the crash are rendered alone, any of them may be the cause
+            boolean[] isolated = new boolean[inputs.size()];
+            for (int i = 0; i < inputs.size(); i++) {
+                final String input = inputs.get(i), name = names.get(i);
+                State state = states.getOrDefault(input, new State());
+                if (state.suspect && !state.quarantined && state.attempts < maxAttempts) {
+                    final int attempts = state.attempts;
+                    try {
+                        scheduler.call(input, renderer -> {
+                            process(renderer, journal, input, name, attempts, summary);
+                            return null;
+                        });
+                    } catch (Exception e) {
+                        throw new IOException("Batch failed", e);
+                    }
+                    isolated[i] = true;
+                }
+            }
+
+            List<CompletableFuture<Void>> queued = new ArrayList<>();
+            for (int i = 0; i < inputs.size(); i++) {
+                final String input = inputs.get(i), name = names.get(i);
+                State state = states.getOrDefault(input, new State());
+                if (isolated[i]) {
+                    continue;
+                }
+                if (state.quarantined) {
+                    summary.quarantined.incrementAndGet();
+                } else if (state.hash != null && isValid(outputDir.resolve(state.output), state.hash)) {
+                    summary.skipped.incrementAndGet();
+                } else if (state.attempts >= maxAttempts) {
+                    // Failed or crashed too many times, most likely it takes the whole process down
+                    summary.count(RenderResult.failed("crashed"));
+                    quarantine(journal, input, summary);
+                } else {
+                    final int attempts = state.attempts;
+                    queued.add(scheduler.submit(input, renderer -> {
+                        process(renderer, journal, input, name, attempts, summary);
+                        return null;
+                    }));
+                }
+            }
+            try {
+                CompletableFuture<Void> all = CompletableFuture.allOf(queued.toArray(new CompletableFuture<?>[0]));
+                while (true) {
+                    try {
+                        all.get(1, TimeUnit.MINUTES);
+                        break;
+                    } catch (TimeoutException e) {
+                        Logger.getLogger(PdfBatchJob.class.getName()).log(Level.INFO, "Batch in progress: " + summary);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Batch interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Batch failed", e.getCause());
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Renders one document retrying it until it succeeds or runs out of attempts
+     */
+    private void process(PdfRenderer renderer, Journal journal, String input, String name, int attempts, Summary summary) {
+        try {
+            RenderResult result = null;
+            while (attempts < maxAttempts) {
+                attempts++;
+                journal.append(START, input);
+                try {
+                    result = render(renderer, journal, input, name);
+                } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                    Logger.getLogger(PdfBatchJob.class.getName()).log(Level.SEVERE, "Unable to render " + input + ", attempt " + attempts, e);
+                    result = RenderResult.failed(e.getClass().getSimpleName());
+                }
+                if (result.hasOutput()) {
+                    summary.rendered.incrementAndGet();
+                    summary.count(result);
+                    return;
+                }
+                journal.append(FAIL, input, result.getReason());
+                if (result.getStatus() == RenderResult.Status.MALFORMED) {
+                    // Input won't get better on the next attempt
+                    break;
+                }
+            }
+            summary.failed.incrementAndGet();
+            summary.count(result);
+            quarantine(journal, input, summary);
+        } catch (IOException e) {
+            Logger.getLogger(PdfBatchJob.class.getName()).log(Level.SEVERE, "Journal can't be written", e);
+        }
+    }
+
+    /**
+     * Renders document into temporary file, syncs it and moves it in place
+     * Finished output is recorded in journal together with its SHA-256
+     *
+     * @return result of rendering, output is kept only if it has one
+     */
+    private RenderResult render(PdfRenderer renderer, Journal journal, String input, String name) throws IOException {
+        Path target = outputDir.resolve(name);
+        Path temp = Files.createTempFile(outputDir, name, ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            RenderResult result;
+            try (Resources.Output file = Resources.openOutput(temp);
+                 DigestOutputStream out = new DigestOutputStream(new BufferedOutputStream(file, 1 << 16), digest)) {
+                result = renderer.render(input, out);
+                out.flush();
+                file.sync();
+            }
+            if (!result.hasOutput()) {
+                return result;
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            journal.append(DONE, input, name, toHex(digest.digest()));
+            return result;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Copies input into quarantine and records it in journal together with the name of the copy
+     */
+    private void quarantine(Journal journal, String input, Summary summary) throws IOException {
+        Files.createDirectories(quarantineDir);
+        Path source = Paths.get(input);
+        String name = quarantineName(source);
+        if (Files.exists(source)) {
+            Files.copy(source, quarantineDir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+        }
+        journal.append(QUARANTINE, input, name);
+        summary.quarantined.incrementAndGet();
+    }
+
+    /**
+     * Builds name of quarantined copy, inputs with the same file name from different directories get different
+     * names as the name starts with hash of the full path
+     *
+     * @param source path to input
+     * @return name of the copy
+     */
+    private static String quarantineName(Path source) {
+        byte[] path = source.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8);
+        return toHex(sha256().digest(path)).substring(0, 16) + "-" + source.getFileName();
+    }
+
+    /**
+     * Checks that finished output is still in place and wasn't changed
+     */
+    private static boolean isValid(Path output, String hash) throws IOException {
+        if (!Files.isRegularFile(output)) {
+            return false;
+        }
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(output), digest)) {
+            byte[] buffer = new byte[1 << 16];
+            while (in.read(buffer) >= 0) {
+                // Digest is updated by the stream
+            }
+        }
+        return hash.equals(toHex(digest.digest()));
+    }
+
+    /**
+     * Restores state of every input from journal, incomplete last line (crash while writing) is dropped
+     */
+    private Map<String, State> readJournal() throws IOException {
+        HashMap<String, State> states = new HashMap<>();
+        if (!Files.exists(journalPath)) {
+            return states;
+        }
+        byte[] bytes = Files.readAllBytes(journalPath);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end < bytes.length) {
+            // Torn record is cut off so that new records don't stick to it
+            try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+                channel.force(false);
+            }
+        }
+        // Input of the last START record of the current run, only its document is charged if the run crashed
+        String lastStarted = null;
+        for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\t", -1);
+            for (int i = 1; i < fields.length; i++) {
+                fields[i] = unescape(fields[i]);
+            }
+            if (fields[0].equals(RUN)) {
+                chargeCrash(states, lastStarted);
+                lastStarted = null;
+                continue;
+            }
+            State state = states.computeIfAbsent(fields[1], key -> new State());
+            switch (fields[0]) {
+                case START:
+                    state.suspect = true;
+                    lastStarted = fields[1];
+                    break;
+                case DONE:
+                    state.suspect = false;
+                    state.attempts = 0;
+                    state.output = fields[2];
+                    state.hash = fields[3];
+                    break;
+                case FAIL:
+                    state.suspect = false;
+                    state.attempts++;
+                    break;
+                case QUARANTINE:
+                    state.quarantined = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        chargeCrash(states, lastStarted);
+        return states;
+    }
+
+    /**
+     * Charges an attempt to the document started last in the run if it never finished: it's the one rendered alone
+     * when the run stopped, or at least the one started just before the crash; others in flight are only suspects
+     */
+    private static void chargeCrash(Map<String, State> states, String lastStarted) {
+        if (lastStarted != null && states.get(lastStarted).suspect) {
+            states.get(lastStarted).attempts++;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                out.append(ch);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Append-only journal, every record is forced to disk before the call returns
+     */
+    private static class Journal implements Closeable {
+        private final FileChannel channel;
+
+        Journal(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        synchronized void append(String record, String... fields) throws IOException {
+            StringBuilder line = new StringBuilder(record);
+            for (String field : fields) {
+                line.append('\t').append(escape(field));
+            }
+            line.append('\n');
+            ByteBuffer buffer = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Start point for nightly bulk runs, run again with the same arguments to resume
+     *
+     * @param args register type (egrul or egrip), output directory, paths to .xml-files
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: PdfBatchJob <egrul|egrip> <output dir> <input.xml>...");
+            return;
+        }
+        String pathToFont = "files/times-new-roman.ttf";
+        PdfRenderer renderer = Objects.equals(args[0], "egrip") ? PdfCreatorEgrip.renderer(pathToFont) : PdfCreatorEgrul.renderer(pathToFont);
+        try (PdfBatchJob job = new PdfBatchJob(renderer, Paths.get(args[1]), Runtime.getRuntime().availableProcessors(), 3)) {
+            System.err.println(job.run(Arrays.asList(args).subList(2, args.length)));
+        }
+        System.err.println(Resources.metrics());
+    }
+}
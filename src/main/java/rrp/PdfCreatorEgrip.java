@@ -0,0 +1,371 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 13-Oct-17
+ * @time 19:22
+ */
+
+package rrp;
+
+import com.itextpdf.text.*;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static rrp.PdfCreatorTools.*;
+
+public class PdfCreatorEgrip {
+
+    // Base font path, every document gets its own table builder
+    private final String pathToFont;
+    // Sections of previously rendered extracts, null if documents are always rendered in full
+    private RenderCache cache;
+    // Documents are read lazily instead of being projected on layout rules
+    private boolean lazy;
+    // Namespaces uri's
+    static final HashMap<String, String> namepaces = new HashMap<String, String>() {{
+        put("xml", XMLConstants.NULL_NS_URI);
+        put("ns1", "urn://x-artefacts-fns-vipip-tosmv-ru/311-15/4.0.5");
+        put("fnst", "urn://x-artefacts-fns/vipip-types/4.0.5");
+    }};
+    // Response element, it may be wrapped into other elements
+    private static final QName response = new QName(namepaces.get("ns1"), "FNSVipIPResponse");
+    // Values read by header besides layout rules, relative to response tag
+    private static final String[] headerPaths = {"КодОбр", "@ИдДок", "СвЮЛ/@ДатаВып", "СвИП/@ОГРНИП",
+            "СвИП/СвФЛ/ФИОРус/@Фамилия", "СвИП/СвФЛ/ФИОРус/@Имя", "СвИП/СвФЛ/ФИОРус/@Отчество"};
+
+    /**
+     * Constructor with path to font
+     *
+     * @param pathToFont      base font path
+     * @param targetNamespace unused
+     */
+    public PdfCreatorEgrip(String pathToFont, String targetNamespace) {
+        this.pathToFont = pathToFont;
+    }
+
+    /**
+     * Creates renderer that parses .xml-file and writes full extract into the given stream,
+     * every call uses its own creator so renderer can be shared between threads
+     * Documents are projected on layout rules, everything rules don't read is dropped while parsing
+     *
+     * @param pathToFont base font path
+     * @return renderer
+     */
+    static PdfRenderer renderer(final String pathToFont) {
+        return renderer(pathToFont, null);
+    }
+
+    /**
+     * Creates renderer like {@link #renderer(String)} that reuses unchanged sections of previous extracts
+     *
+     * @param pathToFont base font path
+     * @param cache      cache of rendered sections shared by all documents, null disables reuse
+     * @return renderer
+     */
+    static PdfRenderer renderer(final String pathToFont, final RenderCache cache) {
+        return renderer(pathToFont, cache, false);
+    }
+
+    /**
+     * Creates renderer like {@link #renderer(String, RenderCache)} that reads documents lazily,
+     * see {@link #setLazyParsing(boolean)}
+     *
+     * @param pathToFont base font path
+     * @param cache      cache of rendered sections shared by all documents, null disables reuse
+     * @param lazy       true to read documents lazily, false to project them on layout rules
+     * @return renderer
+     */
+    static PdfRenderer renderer(final String pathToFont, final RenderCache cache, final boolean lazy) {
+        return (pathToXmlFile, out) -> {
+            PdfCreatorEgrip creator = new PdfCreatorEgrip(pathToFont, null);
+            creator.setRenderCache(cache);
+            creator.setLazyParsing(lazy);
+            return creator.createFullEgrip(creator.parse(pathToXmlFile), out);
+        };
+    }
+
+    /**
+     * Parses .xml-file keeping only elements and attributes read by full layout and header
+     *
+     * @param pathToXmlFile path to .xml
+     * @return tree file representation or null if file can't be parsed
+     */
+    org.w3c.dom.Document parse(String pathToXmlFile) {
+        return parse(pathToXmlFile, Collections.singletonList(LayoutRegistry.FULL));
+    }
+
+    /**
+     * Parses .xml-file once for several layouts, keeping what any of them or header reads;
+     * lazy document keeps everything, see {@link #setLazyParsing(boolean)}
+     *
+     * @param pathToXmlFile path to .xml
+     * @param layouts       names of layouts registered for egrip
+     * @return tree file representation or null if file can't be parsed
+     */
+    org.w3c.dom.Document parse(String pathToXmlFile, Collection<String> layouts) {
+        if (lazy) {
+            return IterParser.forCurrentThread(namepaces).createLazyDocument(pathToXmlFile);
+        }
+        List<RuleTree> rules = new ArrayList<>(layouts.size());
+        for (String layout : layouts) {
+            rules.add(LayoutRegistry.rules("egrip", layout));
+        }
+        return IterParser.forCurrentThread(namepaces).createProjectedDocument(pathToXmlFile, XmlProjection.forRules(rules, response, headerPaths));
+    }
+
+    /**
+     * Switches parsing to lazy documents: whole file is indexed, but only tags visited by the layout
+     * are materialised; malformed content of a tag is found only when it's visited and rendering
+     * then returns {@link RenderResult.Status#MALFORMED}
+     *
+     * @param lazy true to read documents lazily, false to project them on layout rules
+     */
+    void setLazyParsing(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Enables incremental rendering: sections whose values didn't change since the previous extract
+     * of the same ОГРН/ОГРНИП are copied from the cache
+     *
+     * @param cache cache of rendered sections, null disables reuse
+     */
+    void setRenderCache(RenderCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Creates full .pdf-file with all data
+     *
+     * @param doc           input .xml-file
+     * @param pathToPdfFile path to output .pdf-file
+     * @return result of rendering, file isn't kept if there's nothing to show
+     */
+    public RenderResult createFullEgrip(org.w3c.dom.Document doc, String pathToPdfFile) {
+        if (doc == null) {
+            return RenderResult.malformed("unparsable");
+        }
+        Path path = Paths.get(pathToPdfFile);
+        RenderResult result;
+        try (OutputStream out = Resources.openOutput(path)) {
+            result = createFullEgrip(doc, out);
+        } catch (IOException e) {
+            Logger.getLogger(PdfCreatorEgrip.class.getName()).log(Level.SEVERE, null, e);
+            result = RenderResult.failed("io");
+        }
+        if (!result.hasOutput()) {
+            deleteQuietly(path);
+        }
+        return result;
+    }
+
+    /**
+     * Writes full .pdf-file with all data into the stream, stream is left open
+     *
+     * @param doc input .xml-file
+     * @param out output stream
+     * @return result of rendering, nothing is written for malformed input
+     */
+    public RenderResult createFullEgrip(org.w3c.dom.Document doc, OutputStream out) {
+        return createEgrip(doc, out, LayoutRegistry.FULL, null);
+    }
+
+    /**
+     * Writes every requested layout of the document into its own stream, streams are left open
+     * Document is parsed once for all of them with {@link #parse(String, Collection)}, and children of every tag
+     * are grouped once for all of them
+     *
+     * @param doc     input .xml-file
+     * @param outputs layout name refers to output stream of the layout
+     * @return layout name refers to result of rendering
+     */
+    public Map<String, RenderResult> createLayoutsEgrip(org.w3c.dom.Document doc, Map<String, OutputStream> outputs) {
+        Map<Node, HashMap<String, ArrayList<Node>>> groups = new IdentityHashMap<>();
+        Map<String, RenderResult> results = new LinkedHashMap<>();
+        for (Map.Entry<String, OutputStream> output : outputs.entrySet()) {
+            results.put(output.getKey(), createEgrip(doc, output.getValue(), output.getKey(), groups));
+        }
+        return results;
+    }
+
+    /**
+     * Writes one layout of the document into the stream
+     *
+     * @param doc    input .xml-file
+     * @param out    output stream
+     * @param layout layout name
+     * @param groups grouping of children shared with other layouts, null if it isn't shared
+     * @return result of rendering
+     */
+    private RenderResult createEgrip(org.w3c.dom.Document doc, OutputStream out, String layout,
+                                  Map<Node, HashMap<String, ArrayList<Node>>> groups) {
+        if (doc == null) {
+            return RenderResult.malformed("unparsable");
+        }
+        // .xml file parser
+        IterParser docParser = IterParser.forCurrentThread(namepaces);
+        // Lazy document has only its root element, tags around wrapped response are expanded while it's found
+        Node root = LazyXmlDocument.find(doc, response);
+        if (root == null) {
+            return RenderResult.malformed("no-root");
+        }
+        Document document = new Document(PageSize.A4, 45, 45, 45, 45);
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            writer.setCloseStream(false);
+
+            // Layout description, built once and shared by all documents
+            RuleTree rules = LayoutRegistry.rules("egrip", layout);
+            PdfCreatorTools creator = new PdfCreatorTools(pathToFont);
+            creator.shareGroups(groups);
+            document.open();
+            RenderResult result = buildDocument(document, doc, root, docParser, rules, layout, creator);
+
+            document.close();
+            writer.close();
+            return result;
+        } catch (DocumentException e) {
+            Logger.getLogger(PdfCreatorEgrip.class.getName()).log(Level.SEVERE, null, e);
+            return RenderResult.failed("document");
+        } catch (LazyXmlDocument.MalformedXmlException e) {
+            Logger.getLogger(PdfCreatorEgrip.class.getName()).log(Level.SEVERE, "Malformed tag of lazy document", e);
+            return RenderResult.malformed("lazy");
+        } finally {
+            discard(document);
+        }
+    }
+
+    /**
+     * Checks return code, and parses it if it's present
+     * If not, creates header of document and calls parser from root node
+     *
+     * @param document  .pdf-file
+     * @param doc       .xml-file
+     * @param root      root tag of the response
+     * @param docParser IterParser object, allows to take values from .xml tags and parameters
+     * @param rules     root of layout file tree
+     * @param layout    layout name
+     * @param creator   table builder of this document
+     * @return refusal with its code or success
+     */
+    private RenderResult buildDocument(Document document, org.w3c.dom.Document doc, Node root, IterParser docParser,
+                                       RuleTree rules, String layout, PdfCreatorTools creator) throws DocumentException {
+        // Header values are read by XPath, so tags on their paths must exist in lazy document
+        LazyXmlDocument.expandPath(root, "СвИП", "СвФЛ", "ФИОРус");
+
+        Paragraph p = new Paragraph("ВЫПИСКА", fHeader);
+        p.setAlignment(Element.ALIGN_CENTER);
+        p.add(Chunk.NEWLINE);
+        p.add(new Phrase("из Единого государственного реестра индивидуальных предпринимателей", fLevel[1]));
+        document.add(p);
+
+        PdfPTable headerTable = new PdfPTable(3);
+        headerTable.setWidthPercentage(100);
+        headerTable.setWidths(new int[]{1, 2, 3});
+        headerTable.setSpacingBefore(30);
+        headerTable.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
+        headerTable.getDefaultCell().setBorder(Rectangle.NO_BORDER);
+        String date = IterParser.formatDate("yyyy-MM-dd", "dd.MM.yyyy", docParser.getNodeValue(doc, "//ns1:FNSVipIPResponse/ns1:СвЮЛ/@ДатаВып"));
+        if (Objects.equals(date, "")) {
+            date = DateTimeFormatter.ofPattern("dd.MM.yyyy").format(java.time.LocalDate.now());
+        }
+        headerTable.addCell(new Paragraph("Дата: " + date, fPlain));
+        headerTable.addCell("");
+        PdfPCell cell = new PdfPCell(new Phrase("№: " + docParser.getNodeValue(doc, "//ns1:FNSVipIPResponse/@ИдДок"), fPlain));
+        cell.setBorder(Rectangle.NO_BORDER);
+        cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        headerTable.addCell(cell);
+        document.add(headerTable);
+
+        NodeList codes = docParser.getNode(doc, "//ns1:FNSVipIPResponse/ns1:КодОбр");
+        if (codes != null && codes.getLength() > 0) {
+            String requestCode = IterParser.valueOf(codes.item(0)).toString();
+            p = new Paragraph();
+            p.setAlignment(Element.ALIGN_CENTER);
+            p.add(Chunk.NEWLINE);
+            p.add(new Phrase("не может быть предоставлена:", fPlain));
+            p.add(new Chunk("\n\n"));
+            if (Objects.equals(requestCode, "01")) {
+                p.add(new Phrase("Сведения в отношении индивидуального предпринимателя в ЕГРИП по его ОГРНИП не найдены", fLevel[1]));
+            } else if (Objects.equals(requestCode, "53")) {
+                p.add(new Phrase("Сведения в отношении индивидуального предпринимателя не могут быть предоставлены в электронном виде", fLevel[1]));
+            } else {
+                // If there ever will be other return codes
+                p.add(new Phrase("При обработке запроса проиошла неизвестная ошибка, код обработки - " + requestCode, fLevel[1]));
+            }
+            document.add(p);
+            return RenderResult.refused(requestCode);
+        }
+
+        document.add(new Phrase("Настоящая выписка содержит сведения об индивидуальном предпринимателе:", fLevel[1]));
+
+        PdfPTable idTable = new PdfPTable(1);
+        idTable.setSpacingBefore(5);
+        idTable.getDefaultCell().setHorizontalAlignment(Element.ALIGN_CENTER);
+        idTable.getDefaultCell().setBorder(Rectangle.NO_BORDER);
+        String surname = docParser.getNodeValue(doc, "//ns1:FNSVipIPResponse/ns1:СвИП/ns1:СвФЛ/ns1:ФИОРус/@Фамилия"),
+                name = docParser.getNodeValue(doc, "//ns1:FNSVipIPResponse/ns1:СвИП/ns1:СвФЛ/ns1:ФИОРус/@Имя"),
+                fathername = docParser.getNodeValue(doc, "//ns1:FNSVipIPResponse/ns1:СвИП/ns1:СвФЛ/ns1:ФИОРус/@Отчество");
+        if (!Objects.equals(surname, "")) {
+            surname += " ";
+        }
+        if (!Objects.equals(name, "")) {
+            name += " ";
+        }
+        idTable.addCell(new Phrase(surname + name + fathername, fPlain));
+        PdfPCell sign = new PdfPCell(new Phrase("(фамилия, имя, отчество)", fSign));
+        sign.setBorder(Rectangle.TOP);
+        sign.setHorizontalAlignment(Element.ALIGN_CENTER);
+        idTable.addCell(sign);
+        idTable.addCell(new Phrase(docParser.getNodeValue(doc, "//ns1:FNSVipIPResponse/ns1:СвИП/@ОГРНИП"), fPlain));
+        sign = new PdfPCell(new Phrase("(основной государственный регистрационый номер записи о регистрации индивидуального\n" +
+                "предпринимателя)", fSign));
+        sign.setBorder(Rectangle.TOP);
+        sign.setHorizontalAlignment(Element.ALIGN_CENTER);
+        idTable.addCell(sign);
+        document.add(idTable);
+
+        // Call from root node
+        // Layouts render the same sections differently, so they are cached separately
+        String cacheKey = docParser.getNodeValue(doc, "//ns1:FNSVipIPResponse/ns1:СвИП/@ОГРНИП");
+        creator.setCache(cache, cacheKey.isEmpty() || layout.equals(LayoutRegistry.FULL) ? cacheKey : cacheKey + "/" + layout);
+        creator.parseNode(root, rules, RuleTree.ROOT, -1);
+        document.add(creator.getTable());
+        return RenderResult.SUCCESS;
+    }
+
+    /**
+     * Start point for local debugging
+     *
+     * @param args cmd arguments
+     */
+    public static void main(String[] args) {
+        String pathToXmlFile = "files/egrip.xml";
+        String pathToPdfFile = "files/egrip.pdf";
+        PdfCreatorEgrip creator = new PdfCreatorEgrip("files/times-new-roman.ttf", null);
+        creator.createFullEgrip(IterParser.forCurrentThread(namepaces).createXmlDocument(pathToXmlFile), pathToPdfFile);
+    }
+}
+
@@ -0,0 +1,521 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 13-Oct-17
+ * @time 19:45
+ */
+
+package rrp;
+
+import com.itextpdf.text.*;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class PdfCreatorTools {
+
+    // Fonts
+    static Font fPlain, fHeader, fLevel[], fSign;
+    // Font file the fonts and cells below are made of
+    private static String loadedFont;
+    // Styles of separator, colspan and plain cells, cells are copied from them
+    private static PdfPCell separatorPrototype, colspanPrototype, plainPrototype;
+    // Cell that is added whenever required data is missing
+    private static PdfPCell notFoundCell;
+    // Cells with row numbers, index is the number
+    private static volatile PdfPCell[] numberCells = new PdfPCell[0];
+    // Header and name cells of rules, built once for every rule tree
+    private static final Map<RuleTree, RuleCells> ruleCells = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // Table with document values
+    private PdfPTable mainTable;
+    // Current row number
+    private int last;
+    // Sections of previous renders, null if every section is rendered
+    private RenderCache cache;
+    // Key of current document in cache
+    private String cacheKey;
+    // Number of sections met in current document
+    private int section;
+    // Cells added since current section started, null if section isn't recorded
+    private ArrayList<PdfPCell> recording;
+    // Cells of the rule tree rendered now
+    private RuleTree cellsOwner;
+    private RuleCells cells;
+    // Children of tags grouped by local name, shared by creators of several layouts of one document
+    private Map<Node, HashMap<String, ArrayList<Node>>> groups;
+
+    /**
+     * Header cells of every rule at every depth style and name cells of params
+     * Table copies cell when it's added, so the same cell is added to any number of tables
+     */
+    private static final class RuleCells {
+        final AtomicReferenceArray<PdfPCell> headers, names;
+
+        RuleCells(int size) {
+            headers = new AtomicReferenceArray<>(size * (fLevel.length + 1));
+            names = new AtomicReferenceArray<>(size);
+        }
+    }
+
+    PdfCreatorTools(String pathToFont) {
+        try {
+            loadFonts(pathToFont);
+
+            mainTable = new PdfPTable(3);
+            mainTable.setWidthPercentage(100);
+            mainTable.setWidths(new int[]{1, 8, 8});
+            mainTable.setSpacingBefore(20);
+            mainTable.getDefaultCell().setHorizontalAlignment(Element.ALIGN_CENTER);
+            mainTable.getDefaultCell().setVerticalAlignment(Element.ALIGN_MIDDLE);
+            last = 0;
+        } catch (DocumentException | IOException e) {
+            Logger.getLogger(PdfCreatorTools.class.getName()).log(Level.SEVERE, "Unable to create table", e);
+        }
+    }
+
+    /**
+     * Loads fonts and builds cell prototypes, it's done once for font file
+     *
+     * @param pathToFont base font path
+     */
+    private static synchronized void loadFonts(String pathToFont) throws DocumentException, IOException {
+        if (Objects.equals(loadedFont, pathToFont)) {
+            return;
+        }
+        BaseFont times = BaseFont.createFont(pathToFont, "cp1251", BaseFont.EMBEDDED);
+        fPlain = new Font(times, 10);
+        fHeader = new Font(times, 14, Font.BOLD);
+        fLevel = new Font[]{
+                new Font(times, 12, Font.BOLD),
+                new Font(times, 10, Font.BOLD)
+        };
+        fSign = new Font(times, 6, Font.NORMAL);
+
+        separatorPrototype = new PdfPCell();
+        separatorPrototype.setHorizontalAlignment(Element.ALIGN_CENTER);
+        separatorPrototype.setVerticalAlignment(Element.ALIGN_MIDDLE);
+        separatorPrototype.setPadding(5);
+        separatorPrototype.setPaddingBottom(7);
+        separatorPrototype.setBorder(Rectangle.NO_BORDER);
+        separatorPrototype.setColspan(3);
+
+        colspanPrototype = new PdfPCell();
+        colspanPrototype.setHorizontalAlignment(Element.ALIGN_CENTER);
+        colspanPrototype.setVerticalAlignment(Element.ALIGN_MIDDLE);
+        colspanPrototype.setColspan(3);
+        colspanPrototype.setPaddingBottom(5);
+
+        // Same style as default cell of the main table
+        plainPrototype = new PdfPCell((Phrase) null);
+        plainPrototype.setHorizontalAlignment(Element.ALIGN_CENTER);
+        plainPrototype.setVerticalAlignment(Element.ALIGN_MIDDLE);
+
+        notFoundCell = createColspanCell("Сведения не найдены", fPlain);
+        numberCells = new PdfPCell[0];
+        ruleCells.clear();
+        loadedFont = pathToFont;
+    }
+
+    /**
+     * Enables reuse of unchanged sections rendered for the same document before
+     *
+     * @param cache    cache of rendered sections
+     * @param cacheKey key of the document (ОГРН/ОГРНИП), null or empty disables cache
+     */
+    void setCache(RenderCache cache, String cacheKey) {
+        boolean enabled = cache != null && cacheKey != null && !cacheKey.isEmpty();
+        this.cache = enabled ? cache : null;
+        this.cacheKey = enabled ? cacheKey : null;
+    }
+
+    /**
+     * Shares grouping of children between creators rendering the same document with different layouts,
+     * every tag is grouped once whatever number of layouts reads it
+     *
+     * @param groups identity map shared by the creators, null if children are grouped for this layout only
+     */
+    void shareGroups(Map<Node, HashMap<String, ArrayList<Node>>> groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Recursively generates all .pdf content declared in current node
+     *
+     * @param current current node/tag of .xml tree representation
+     * @param rules   layout structure tree
+     * @param rule    current rule of layout structure tree
+     * @param level   current node depth in the tree
+     */
+    void parseNode(Node current, RuleTree rules, int rule, int level) {
+        // Return if there is no node
+        if (rules == null) {
+            Logger.getLogger(PdfCreatorEgrul.class.getName()).log(Level.SEVERE, "Current node is null", 0);
+            return;
+        }
+        // Generates all required content that is somehow not presented in document
+        if (current == null) {
+            if (rules.isRequired(rule)) {
+                if (level >= 0) {
+                    addCell(headerCell(rules, rule, level));
+                }
+                addCell(notFoundCell);
+            }
+            return;
+        }
+        // If node is tag then check it's content
+        if (rules.isNode(rule)) {
+            if (cache != null && level == 1) {
+                parseSection(current, rules, rule, level);
+                return;
+            }
+            HashMap<String, ArrayList<Node>> nsNodes = groups == null ? groupByName(current, rules, rule)
+                    : groups.computeIfAbsent(current, node -> groupByName(node, null, RuleTree.ROOT));
+
+            boolean empty = true;
+            if (level >= 0) {
+                addCell(headerCell(rules, rule, level));
+            }
+
+            // Check all data that is presented in layout rules
+            for (int i = 0; i < rules.getParamCount(rule); i++) {
+                int param = rules.getParam(rule, i);
+                ArrayList<Node> values = nsNodes.get(rules.getPath(param));
+                if (values != null) {
+                    for (Node node : values) {
+                        empty = false;
+                        CharSequence value = IterParser.valueOf(node);
+                        if (rules.isDate(param)) {
+                            value = IterParser.formatDate("yyyy-MM-dd", "dd.MM.yyyy", value.toString());
+                        }
+                        addRow(++last, nameCell(rules, param), value);
+                    }
+                }
+            }
+            // Check all data on lower levels
+            for (int i = 0; i < rules.getChildCount(rule); i++) {
+                int child = rules.getChild(rule, i);
+                ArrayList<Node> next = nsNodes.get(rules.getPath(child));
+                if (next != null) {
+                    empty = false;
+                    for (Node node : next) {
+                        parseNode(node, rules, child, level + 1);
+                    }
+                }
+            }
+            // If the data is required and missing
+            if (empty) {
+                if (rules.isRequired(rule)) {
+                    addCell(notFoundCell);
+                } else {
+                    deleteLastRow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds section reusing its cells if rules, values and position of the section didn't change since previous render
+     *
+     * @param current section node
+     * @param rules   layout structure tree
+     * @param rule    section rule of layout structure tree
+     * @param level   section depth in the tree
+     */
+    private void parseSection(Node current, RuleTree rules, int rule, int level) {
+        String key = (section++) + ":" + rules.getPath(rule);
+        long fingerprint = fingerprint(current, rules, rule, FNV_BASIS);
+        RenderCache.Fragment cached = cache.get(cacheKey, key);
+        if (cached != null && cached.rules == rules && cached.fingerprint == fingerprint && cached.firstRow == last) {
+            for (PdfPCell cell : cached.cells) {
+                mainTable.addCell(cell);
+            }
+            last += cached.rows;
+            cache.hit();
+            return;
+        }
+
+        cache.miss();
+        int firstRow = last;
+        recording = new ArrayList<>();
+        RenderCache currentCache = cache;
+        cache = null;
+        parseNode(current, rules, rule, level);
+        cache = currentCache;
+        cache.put(cacheKey, key, new RenderCache.Fragment(rules, fingerprint, firstRow, last - firstRow, recording));
+        recording = null;
+    }
+
+    // 64-bit FNV-1a parameters
+    private static final long FNV_BASIS = 0xcbf29ce484222325L, FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Hashes all values that would be rendered from the node, in the order they would be rendered
+     *
+     * @param current current node/tag of .xml tree representation
+     * @param rules   layout structure tree
+     * @param rule    current rule of layout structure tree
+     * @param hash    hash of previous values
+     * @return hash including values of this node
+     */
+    private static long fingerprint(Node current, RuleTree rules, int rule, long hash) {
+        HashMap<String, ArrayList<Node>> nsNodes = groupByName(current, rules, rule);
+        for (int i = 0; i < rules.getParamCount(rule); i++) {
+            int param = rules.getParam(rule, i);
+            ArrayList<Node> values = nsNodes.get(rules.getPath(param));
+            if (values != null) {
+                for (Node node : values) {
+                    hash = hash(hash(hash, rules.getPath(param)), IterParser.valueOf(node));
+                }
+            }
+        }
+        for (int i = 0; i < rules.getChildCount(rule); i++) {
+            int child = rules.getChild(rule, i);
+            ArrayList<Node> next = nsNodes.get(rules.getPath(child));
+            if (next != null && rules.isNode(child)) {
+                for (Node node : next) {
+                    hash = fingerprint(node, rules, child, hash(hash, rules.getPath(child)));
+                }
+            }
+        }
+        // Closes the node, so values of sibling nodes can't be confused with nested ones
+        return (hash ^ '/') * FNV_PRIME;
+    }
+
+    private static long hash(long hash, CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ 0xffff) * FNV_PRIME;
+    }
+
+    /**
+     * Groups child tags and attributes of the node by local name, names the rule doesn't look for are skipped
+     * Tag of lazy document is expanded here, that's the only place where rendering goes down the tree
+     *
+     * @param current node
+     * @param rules   layout structure tree, null keeps every name
+     * @param rule    rule of the node
+     * @return every local name refers to list of nodes with this name
+     */
+    private static HashMap<String, ArrayList<Node>> groupByName(Node current, RuleTree rules, int rule) {
+        LazyXmlDocument.expand(current);
+        NodeList nodes = current.getChildNodes();
+        NamedNodeMap attrib = current.getAttributes();
+        HashMap<String, ArrayList<Node>> nsNodes = new HashMap<>();
+
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                String name = node.getLocalName();
+                if (rules == null || rules.looksFor(rule, name)) {
+                    nsNodes.computeIfAbsent(name, key -> new ArrayList<>()).add(node);
+                }
+            }
+        }
+        for (int i = 0; i < attrib.getLength(); i++) {
+            Node item = attrib.item(i);
+            if (rules == null || rules.looksFor(rule, item.getLocalName())) {
+                ArrayList<Node> single = new ArrayList<>(1);
+                single.add(item);
+                nsNodes.put(item.getLocalName(), single);
+            }
+        }
+        return nsNodes;
+    }
+
+    /**
+     * Adds cell to the table and to the recorded section
+     *
+     * @param cell cell
+     */
+    private void addCell(PdfPCell cell) {
+        mainTable.addCell(cell);
+        if (recording != null) {
+            recording.add(cell);
+        }
+    }
+
+    /**
+     * Removes last row from the table and from the recorded section, rows removed are always single colspan cells
+     */
+    private void deleteLastRow() {
+        mainTable.deleteLastRow();
+        if (recording != null && !recording.isEmpty()) {
+            recording.remove(recording.size() - 1);
+        }
+    }
+
+    /**
+     * Returns header cell of the rule, it's built once for every rule tree, rule and depth style
+     *
+     * @param rules layout structure tree
+     * @param rule  rule
+     * @param level depth of the rule, 0 or more
+     * @return header cell
+     */
+    private PdfPCell headerCell(RuleTree rules, int rule, int level) {
+        int style = level < 2 ? level : 1 + Math.min(fLevel.length - 1, level - 1);
+        int index = rule * (fLevel.length + 1) + style;
+        PdfPCell cell = cellsOf(rules).headers.get(index);
+        if (cell == null) {
+            if (level == 0) {
+                cell = createSeparatorCell(rules.getName(rule), fHeader);
+            } else if (level == 1) {
+                cell = createSeparatorCell(rules.getName(rule), fLevel[0]);
+            } else {
+                cell = createColspanCell(rules.getName(rule), fLevel[Math.min(fLevel.length - 1, level - 1)]);
+            }
+            cells.headers.set(index, cell);
+        }
+        return cell;
+    }
+
+    /**
+     * Returns cell with the name of param, it's built once for every rule tree and rule
+     *
+     * @param rules layout structure tree
+     * @param param param rule
+     * @return name cell
+     */
+    private PdfPCell nameCell(RuleTree rules, int param) {
+        PdfPCell cell = cellsOf(rules).names.get(param);
+        if (cell == null) {
+            cell = createPlainCell(rules.getName(param));
+            cells.names.set(param, cell);
+        }
+        return cell;
+    }
+
+    private RuleCells cellsOf(RuleTree rules) {
+        if (cellsOwner != rules) {
+            cells = ruleCells.computeIfAbsent(rules, key -> new RuleCells(key.size()));
+            cellsOwner = rules;
+        }
+        return cells;
+    }
+
+    /**
+     * Returns cell with row number, cells are built once and shared by all tables
+     *
+     * @param index row number
+     * @return number cell
+     */
+    private static PdfPCell numberCell(int index) {
+        PdfPCell[] cells = numberCells;
+        if (index >= cells.length) {
+            cells = growNumberCells(index);
+        }
+        return cells[index];
+    }
+
+    private static synchronized PdfPCell[] growNumberCells(int index) {
+        PdfPCell[] cells = numberCells;
+        if (index < cells.length) {
+            return cells;
+        }
+        PdfPCell[] grown = Arrays.copyOf(cells, Math.max(index + 1, Math.max(64, cells.length * 2)));
+        for (int i = cells.length; i < grown.length; i++) {
+            grown[i] = createPlainCell(String.valueOf(i));
+        }
+        numberCells = grown;
+        return grown;
+    }
+
+    /**
+     * Creates table separator cell
+     *
+     * @param separatorCellContent string content
+     * @param font                 font
+     * @return table cell with separation style
+     */
+    private static PdfPCell createSeparatorCell(String separatorCellContent, Font font) {
+        PdfPCell cell = new PdfPCell(separatorPrototype);
+        cell.setPhrase(new Phrase(separatorCellContent, font));
+        return cell;
+    }
+
+    /**
+     * Creates table colspan cell
+     *
+     * @param colspanCellContent string content
+     * @param font               font
+     * @return table cell with colspan style
+     */
+    private static PdfPCell createColspanCell(String colspanCellContent, Font font) {
+        PdfPCell cell = new PdfPCell(colspanPrototype);
+        cell.setPhrase(new Phrase(colspanCellContent, font));
+        return cell;
+    }
+
+    /**
+     * Creates cell with default style of the main table
+     *
+     * @param content string content
+     * @return table cell
+     */
+    private static PdfPCell createPlainCell(String content) {
+        PdfPCell cell = new PdfPCell(plainPrototype);
+        cell.setPhrase(new Phrase(content, fPlain));
+        return cell;
+    }
+
+    /**
+     * Adds three-element row into table
+     *
+     * @param index row number (1 element)
+     * @param name  parameter name cell (2 element)
+     * @param value parameter value (3 element), turned into string only here
+     */
+    private void addRow(int index, PdfPCell name, CharSequence value) {
+        addCell(numberCell(index));
+        addCell(name);
+        addCell(createPlainCell(value.toString()));
+    }
+
+    PdfPTable getTable() {
+        return mainTable;
+    }
+
+    /**
+     * Closes document left open by failed rendering, so its writer drops everything it holds
+     * Output stream isn't closed, it belongs to the caller
+     *
+     * @param document .pdf-file, nothing is done if it's already closed
+     */
+    static void discard(Document document) {
+        if (!document.isOpen()) {
+            return;
+        }
+        try {
+            document.close();
+        } catch (RuntimeException e) {
+            // Document without pages can't be finished, it's dropped anyway
+            Logger.getLogger(PdfCreatorTools.class.getName()).log(Level.FINE, "Discarded document can't be closed", e);
+        }
+    }
+
+    /**
+     * Removes output that has nothing to show
+     *
+     * @param path path to output file
+     */
+    static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            Logger.getLogger(PdfCreatorTools.class.getName()).log(Level.WARNING, "Unable to delete " + path, e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 10:12
+ */
+
+package rrp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Renders one .xml-response into .pdf-stream
+ * Implementations are expected to be safe for use from several threads
+ */
+interface PdfRenderer {
+
+    /**
+     * Renders document, stream is left open
+     *
+     * @param pathToXmlFile path to input .xml
+     * @param out           output stream
+     * @return result of rendering with its reason
+     * @throws IOException if output can't be written
+     */
+    RenderResult render(String pathToXmlFile, OutputStream out) throws IOException;
+}
@@ -0,0 +1,109 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 12:30
+ */
+
+package rrp;
+
+import com.itextpdf.text.pdf.PdfPCell;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps laid out sections of recently rendered documents, so unchanged sections of the next extract
+ * of the same ОГРН/ОГРНИП are copied instead of being rendered again
+ * Least recently rendered documents are dropped first
+ */
+class RenderCache {
+
+    /**
+     * Cells of one section together with rules and values fingerprint they were rendered from
+     */
+    static class Fragment {
+        // Compiled rules the cells were rendered with, reloaded .csv gives new rules and makes the fragment stale
+        final RuleTree rules;
+        // Hash of all values of the section
+        final long fingerprint;
+        // Number of the last row before the section, rows are numbered through the whole table
+        final int firstRow;
+        // Number of numbered rows in the section
+        final int rows;
+        final List<PdfPCell> cells;
+
+        Fragment(RuleTree rules, long fingerprint, int firstRow, int rows, List<PdfPCell> cells) {
+            this.rules = rules;
+            this.fingerprint = fingerprint;
+            this.firstRow = firstRow;
+            this.rows = rows;
+            this.cells = cells;
+        }
+    }
+
+    // Sections by document key, in order of access
+    private final LinkedHashMap<String, HashMap<String, Fragment>> documents;
+    private long hits, misses;
+
+    /**
+     * Constructor with cache size
+     *
+     * @param maxDocuments number of documents whose sections are kept
+     */
+    RenderCache(final int maxDocuments) {
+        documents = new LinkedHashMap<String, HashMap<String, Fragment>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HashMap<String, Fragment>> eldest) {
+                return size() > maxDocuments;
+            }
+        };
+    }
+
+    /**
+     * Returns section rendered for the document before
+     *
+     * @param document document key (ОГРН/ОГРНИП)
+     * @param section  section key
+     * @return section or null if it wasn't rendered
+     */
+    synchronized Fragment get(String document, String section) {
+        HashMap<String, Fragment> sections = documents.get(document);
+        return sections == null ? null : sections.get(section);
+    }
+
+    /**
+     * Stores rendered section
+     *
+     * @param document document key (ОГРН/ОГРНИП)
+     * @param section  section key
+     * @param fragment rendered section
+     */
+    synchronized void put(String document, String section, Fragment fragment) {
+        documents.computeIfAbsent(document, key -> new HashMap<>()).put(section, fragment);
+    }
+
+    /**
+     * Counts section that was reused
+     */
+    synchronized void hit() {
+        hits++;
+    }
+
+    /**
+     * Counts section that was rendered again
+     */
+    synchronized void miss() {
+        misses++;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 21:40
+ */
+
+package rrp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Entry point of the runnable jar, every command is run from the directory with files/ (rules and font)
+ * Command "train" renders synthetic documents through every stage, it's run by the appcds build profile
+ * with -XX:ArchiveClassesAtExit so that later runs start with -XX:SharedArchiveFile
+ */
+public class RenderCli {
+
+    private static final String FONT = "files/times-new-roman.ttf";
+
+    public static void main(String[] args) throws Exception {
+        String[] rest = args.length == 0 ? args : Arrays.copyOfRange(args, 1, args.length);
+        switch (args.length == 0 ? "" : args[0]) {
+            case "render":
+                System.exit(render(rest));
+                break;
+            case "archive":
+                PdfBatchArchiver.main(rest);
+                break;
+            case "batch":
+                PdfBatchJob.main(rest);
+                break;
+            case "validate":
+                RenderValidator.main(rest);
+                break;
+            case "dump":
+                XmlDumper.main(rest);
+                break;
+            case "train":
+                train(rest);
+                break;
+            default:
+                System.err.println("Usage: <command> <arguments>, commands:\n"
+                        + "  render [--lazy] <egrul|egrip> <input.xml> <output.pdf>\n"
+                        + "  archive <egrul|egrip> <output.zip> <input.xml>...\n"
+                        + "  batch <egrul|egrip> <output dir> <input.xml>...\n"
+                        + "  validate <egrul|egrip> <corpus dir> [options]\n"
+                        + "  dump [--json] [--stream] [--filter expression] <input.xml>\n"
+                        + "  train <egrul|egrip> [documents]");
+        }
+    }
+
+    /**
+     * Renders one document
+     *
+     * @return exit code, 1 if nothing was written
+     */
+    private static int render(String[] args) {
+        boolean lazy = args.length > 0 && Objects.equals(args[0], "--lazy");
+        if (lazy) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length != 3) {
+            System.err.println("Usage: render [--lazy] <egrul|egrip> <input.xml> <output.pdf>");
+            return 2;
+        }
+        RenderResult result;
+        if (Objects.equals(args[0], "egrip")) {
+            PdfCreatorEgrip creator = new PdfCreatorEgrip(FONT, null);
+            creator.setLazyParsing(lazy);
+            result = creator.createFullEgrip(creator.parse(args[1]), args[2]);
+        } else {
+            PdfCreatorEgrul creator = new PdfCreatorEgrul(FONT, null);
+            creator.setLazyParsing(lazy);
+            result = creator.createFullEgrul(creator.parse(args[1]), args[2]);
+        }
+        System.err.println(result);
+        return result.hasOutput() ? 0 : 1;
+    }
+
+    /**
+     * Generates synthetic documents and renders them one by one and in parallel archive,
+     * so classes of every stage are loaded
+     */
+    private static void train(String[] args) throws IOException {
+        String type = args.length > 0 && Objects.equals(args[0], "egrip") ? "egrip" : "egrul";
+        int documents = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        RenderValidator validator = RenderValidator.forRegister(type, FONT);
+        PdfRenderer renderer = type.equals("egrip") ? PdfCreatorEgrip.renderer(FONT) : PdfCreatorEgrul.renderer(FONT);
+
+        Path dir = Files.createTempDirectory("train");
+        List<String> inputs = new ArrayList<>(documents);
+        try {
+            for (int i = 0; i < documents; i++) {
+                Path input = dir.resolve(type + "-" + i + ".xml");
+                Files.write(input, validator.generate(i, i == 0).getBytes(StandardCharsets.UTF_8));
+                inputs.add(input.toString());
+            }
+            for (String input : inputs) {
+                RenderValidator.rows(render(renderer, input));
+            }
+            try (PdfBatchArchiver archiver = new PdfBatchArchiver(renderer, 2, true)) {
+                int written = archiver.archive(inputs, OutputStream.nullOutputStream());
+                System.err.println("Trained on " + documents + " documents, " + written + " archived");
+            }
+            System.err.println(Resources.metrics());
+        } finally {
+            for (String input : inputs) {
+                Files.deleteIfExists(Path.of(input));
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static byte[] render(PdfRenderer renderer, String input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        renderer.render(input, out);
+        return out.toByteArray();
+    }
+}
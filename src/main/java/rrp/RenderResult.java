@@ -0,0 +1,92 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 19:30
+ */
+
+package rrp;
+
+/**
+ * Outcome of rendering one document, returned instead of thrown so that normal path never builds exceptions
+ * Reason is machine-readable and used as key in batch summaries
+ */
+final class RenderResult {
+
+    enum Status {
+        // Full extract was written
+        SUCCESS,
+        // Register refused to give data, refusal notice with its code was written
+        REFUSED,
+        // Input isn't readable .xml of the register, nothing was written
+        MALFORMED,
+        // Rendering broke, output is incomplete
+        FAILED
+    }
+
+    static final RenderResult SUCCESS = new RenderResult(Status.SUCCESS, null);
+
+    private final Status status;
+    // Refusal code or short description of the problem, null on success
+    private final String detail;
+
+    private RenderResult(Status status, String detail) {
+        this.status = status;
+        this.detail = detail;
+    }
+
+    /**
+     * @param code КодОбр of the response, like 01 or 53
+     * @return refusal result
+     */
+    static RenderResult refused(String code) {
+        return new RenderResult(Status.REFUSED, code);
+    }
+
+    /**
+     * @param detail what is wrong with the input, like "unparsable" or "no-root"
+     * @return malformed input result
+     */
+    static RenderResult malformed(String detail) {
+        return new RenderResult(Status.MALFORMED, detail);
+    }
+
+    /**
+     * @param detail where rendering broke, like "io" or "document"
+     * @return failure result
+     */
+    static RenderResult failed(String detail) {
+        return new RenderResult(Status.FAILED, detail);
+    }
+
+    Status getStatus() {
+        return status;
+    }
+
+    String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Checks whether output is a finished .pdf-file, refusal notice is finished too
+     *
+     * @return true for success and refusal
+     */
+    boolean hasOutput() {
+        return status == Status.SUCCESS || status == Status.REFUSED;
+    }
+
+    /**
+     * Returns reason like "SUCCESS", "REFUSED:53" or "MALFORMED:no-root"
+     *
+     * @return reason
+     */
+    String getReason() {
+        return detail == null ? status.name() : status.name() + ":" + detail;
+    }
+
+    @Override
+    public String toString() {
+        return getReason();
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 18:50
+ */
+
+package rrp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs rendering tasks against heap budget
+ * Memory cost of every document is estimated from file size and element count before it's parsed, task waits
+ * until its cost fits into the budget of its lane. Documents that don't fit into fair share of one worker go to
+ * a separate single-slot lane with its own half of the budget, so a large document waiting for memory never
+ * holds up small documents and they keep flowing at full parallelism
+ * Scheduler owns its worker threads, they are stopped by {@link #close()}
+ */
+class RenderScheduler implements AutoCloseable {
+
+    /**
+     * Work done with the document by the renderer chosen for its lane
+     */
+    interface Task<T> {
+        T run(PdfRenderer renderer) throws Exception;
+    }
+
+    // Bytes sampled from the head of the file to count elements
+    private static final int SAMPLE = 64 * 1024;
+    // Heap kept by parsed tree and table per element, measured on projected documents
+    private static final int ELEMENT_COST = 512;
+    // Parser buffers and strings take about twice the file size
+    private static final int BYTE_COST = 2;
+    private static final long MB = 1024 * 1024;
+
+    private final PdfRenderer renderer, largeRenderer;
+    private final ExecutorService lane, largeLane;
+    // Budgets of the lanes in megabytes, large lane gets half of the whole budget
+    private final Semaphore budget, largeBudget;
+    private final int budgetMb, largeBudgetMb;
+    // Estimated cost above which document goes to large lane
+    private final long largeCost;
+
+    /**
+     * Constructor with the same renderer for both lanes and half of max heap as budget
+     *
+     * @param renderer renderer of single document
+     * @param threads  number of workers for small documents
+     */
+    RenderScheduler(PdfRenderer renderer, int threads) {
+        this(renderer, renderer, threads, Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    /**
+     * Constructor with all settings
+     *
+     * @param renderer      renderer of small documents
+     * @param largeRenderer renderer of oversized documents, should use streaming parse
+     * @param threads       number of workers for small documents
+     * @param budgetBytes   heap available for documents being rendered
+     */
+    RenderScheduler(PdfRenderer renderer, PdfRenderer largeRenderer, int threads, long budgetBytes) {
+        this.renderer = renderer;
+        this.largeRenderer = largeRenderer;
+        threads = Math.max(1, threads);
+        int totalMb = (int) Math.max(2, Math.min(Integer.MAX_VALUE, budgetBytes / MB));
+        largeBudgetMb = totalMb / 2;
+        budgetMb = totalMb - largeBudgetMb;
+        budget = new Semaphore(budgetMb);
+        largeBudget = new Semaphore(largeBudgetMb);
+        largeCost = budgetMb * MB / threads;
+        lane = Executors.newFixedThreadPool(threads, daemons("render"));
+        largeLane = Executors.newSingleThreadExecutor(daemons("render-large"));
+    }
+
+    /**
+     * Estimates heap needed to render the document, element count is extrapolated from the head of the file
+     *
+     * @param pathToXmlFile path to .xml
+     * @return estimated cost in bytes, 0 if file can't be read
+     */
+    static long estimate(String pathToXmlFile) {
+        File file = new File(pathToXmlFile);
+        if (!file.isFile()) {
+            // Reported by the renderer
+            return 0;
+        }
+        long size = file.length();
+        byte[] sample = new byte[(int) Math.min(SAMPLE, size)];
+        int read = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            for (int n; read < sample.length && (n = in.read(sample, read, sample.length - read)) > 0; ) {
+                read += n;
+            }
+        } catch (IOException e) {
+            Logger.getLogger(RenderScheduler.class.getName()).log(Level.WARNING, "Unable to estimate " + pathToXmlFile, e);
+            return 0;
+        }
+        long elements = 0;
+        for (int i = 0; i + 1 < read; i++) {
+            if (sample[i] == '<' && sample[i + 1] != '/' && sample[i + 1] != '?' && sample[i + 1] != '!') {
+                elements++;
+            }
+        }
+        if (read > 0 && read < size) {
+            elements = elements * size / read;
+        }
+        return size * BYTE_COST + elements * ELEMENT_COST;
+    }
+
+    /**
+     * Checks whether document of the given cost goes to large lane
+     *
+     * @param cost estimated cost in bytes
+     * @return true for oversized document
+     */
+    boolean isLarge(long cost) {
+        return cost > largeCost;
+    }
+
+    /**
+     * Queues the task, it starts once its lane is free and its cost fits into the budget
+     *
+     * @param pathToXmlFile path to .xml the task renders
+     * @param task          work with the document
+     * @return result of the task
+     */
+    <T> CompletableFuture<T> submit(String pathToXmlFile, Task<T> task) {
+        long cost = estimate(pathToXmlFile);
+        boolean large = isLarge(cost);
+        int permits = permits(cost, large);
+        Semaphore budget = large ? largeBudget : this.budget;
+        CompletableFuture<T> result = new CompletableFuture<>();
+        (large ? largeLane : lane).execute(() -> {
+            try {
+                budget.acquire(permits);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                result.complete(task.run(large ? largeRenderer : renderer));
+            } catch (Exception | OutOfMemoryError e) {
+                result.completeExceptionally(e);
+            } finally {
+                budget.release(permits);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs the task in the calling thread with the renderer and budget of its lane
+     *
+     * @param pathToXmlFile path to .xml the task renders
+     * @param task          work with the document
+     * @return result of the task
+     * @throws Exception thrown by the task
+     */
+    <T> T call(String pathToXmlFile, Task<T> task) throws Exception {
+        long cost = estimate(pathToXmlFile);
+        boolean large = isLarge(cost);
+        int permits = permits(cost, large);
+        Semaphore budget = large ? largeBudget : this.budget;
+        budget.acquire(permits);
+        try {
+            return task.run(large ? largeRenderer : renderer);
+        } finally {
+            budget.release(permits);
+        }
+    }
+
+    /**
+     * Converts cost into megabyte permits, document never takes more than the budget of its lane
+     */
+    private int permits(long cost, boolean large) {
+        long limit = large ? largeBudgetMb : budgetMb;
+        return (int) Math.max(1, Math.min(limit, (cost + MB - 1) / MB));
+    }
+
+    /**
+     * Stops both lanes, queued tasks are dropped
+     */
+    void shutdownNow() {
+        lane.shutdownNow();
+        largeLane.shutdownNow();
+    }
+
+    /**
+     * Stops both lanes, see {@link #shutdownNow()}
+     */
+    @Override
+    public void close() {
+        shutdownNow();
+    }
+
+    // Workers don't keep JVM alive, scheduler may be shared for the whole run
+    private static ThreadFactory daemons(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
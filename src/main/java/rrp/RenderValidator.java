@@ -0,0 +1,355 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 20:15
+ */
+
+package rrp;
+
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Regression and performance gate for rendering
+ * Checks layout rules for consistency, generates reproducible synthetic corpus that covers every rule path,
+ * renders it and compares extracted text row by row against golden files, and measures throughput
+ */
+class RenderValidator {
+
+    // Values used by generator, some of them need escaping
+    private static final String[] WORDS = {"ОБЩЕСТВО", "МОСКВА", "Иванов", "Пётр", "СЕВЕР", "\"ТЕСТ\"", "А&Б", "<нет>", "ул. Ленина, д. 1"};
+    // Dates are generated before this one so that they never look like today
+    private static final LocalDate FIRST_DATE = LocalDate.of(1991, 1, 1);
+    // Today's date may appear in header when extract date is missing, it's masked before comparison
+    private static final String TODAY = DateTimeFormatter.ofPattern("dd.MM.yyyy").format(LocalDate.now());
+
+    private final RuleTree rules;
+    // Root tag local name and namespace of the register
+    private final String root, namespace;
+    private final PdfRenderer renderer;
+    // Rules written into at least one generated document
+    private final BitSet covered = new BitSet();
+
+    /**
+     * Constructor with register description
+     *
+     * @param rules     layout rules of the register
+     * @param root      local name of response tag
+     * @param namespace namespace of response tags
+     * @param renderer  renderer of the register
+     */
+    RenderValidator(RuleTree rules, String root, String namespace, PdfRenderer renderer) {
+        this.rules = rules;
+        this.root = root;
+        this.namespace = namespace;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Creates validator of the full layout of the register
+     *
+     * @param type       register type, egrul or egrip
+     * @param pathToFont base font path
+     * @return validator
+     */
+    static RenderValidator forRegister(String type, String pathToFont) {
+        return forRegister(type, pathToFont, false);
+    }
+
+    /**
+     * Creates validator of the full layout of the register
+     *
+     * @param type       register type, egrul or egrip
+     * @param pathToFont base font path
+     * @param lazy       true to render lazily read documents instead of projected ones
+     * @return validator
+     */
+    static RenderValidator forRegister(String type, String pathToFont, boolean lazy) {
+        RuleTree rules = LayoutRegistry.rules(type, LayoutRegistry.FULL);
+        return type.equals("egrip")
+                ? new RenderValidator(rules, "FNSVipIPResponse", PdfCreatorEgrip.namepaces.get("ns1"), PdfCreatorEgrip.renderer(pathToFont, null, lazy))
+                : new RenderValidator(rules, "FNSVipULResponse", PdfCreatorEgrul.namepaces.get("ns1"), PdfCreatorEgrul.renderer(pathToFont, null, lazy));
+    }
+
+    /**
+     * Checks that rules can be rendered the way they are written
+     *
+     * @param rules layout rules
+     * @return problems found, empty if rules are consistent
+     */
+    static List<String> checkRules(RuleTree rules) {
+        List<String> problems = new ArrayList<>();
+        for (int rule = 0; rule < rules.size(); rule++) {
+            String where = "rule " + rule + " (" + rules.getPath(rule) + ")";
+            if (rule != RuleTree.ROOT) {
+                if (!isXmlName(rules.getPath(rule))) {
+                    problems.add(where + ": path is not a tag or attribute name");
+                }
+                if (rules.getName(rule) == null || rules.getName(rule).trim().isEmpty()) {
+                    problems.add(where + ": name is empty");
+                }
+            }
+            if (rules.isNode(rule)) {
+                if (rules.isDate(rule)) {
+                    problems.add(where + ": section can't be a date");
+                }
+                if (rule != RuleTree.ROOT && rules.getParamCount(rule) == 0 && rules.getChildCount(rule) == 0) {
+                    problems.add(where + ": section has nothing to show");
+                }
+            } else if (rules.getChildCount(rule) > 0 || rules.getParamCount(rule) > 0) {
+                problems.add(where + ": value has rules below it");
+            }
+
+            // Values are grouped by local name, the same name twice in one section hides one of the rules
+            HashSet<String> paths = new HashSet<>();
+            for (int i = 0; i < rules.getParamCount(rule); i++) {
+                if (!paths.add(rules.getPath(rules.getParam(rule, i)))) {
+                    problems.add(where + ": " + rules.getPath(rules.getParam(rule, i)) + " is listed twice");
+                }
+            }
+            for (int i = 0; i < rules.getChildCount(rule); i++) {
+                if (!paths.add(rules.getPath(rules.getChild(rule, i)))) {
+                    problems.add(where + ": " + rules.getPath(rules.getChild(rule, i)) + " is listed twice");
+                }
+            }
+        }
+        return problems;
+    }
+
+    private static boolean isXmlName(String name) {
+        if (name == null || name.isEmpty() || !(Character.isLetter(name.charAt(0)) || name.charAt(0) == '_')) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if (!(Character.isLetterOrDigit(ch) || ch == '_' || ch == '-' || ch == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generates one document of the corpus, the same seed always gives the same document
+     * Full document contains every rule twice, others skip optional and sometimes required sections,
+     * repeat sections, write values both as attributes and as tags and add tags that rules don't read
+     *
+     * @param seed seed of the document
+     * @param full write every rule
+     * @return .xml content
+     */
+    String generate(long seed, boolean full) {
+        Random random = new Random(seed);
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<ns1:").append(root).append(" xmlns:ns1=\"").append(namespace)
+                .append("\" ИдДок=\"").append(Long.toHexString(seed)).append('"');
+        content(xml, RuleTree.ROOT, random, full);
+        if (!full && random.nextInt(20) == 0) {
+            xml.append("<ns1:КодОбр>").append(random.nextBoolean() ? "01" : "53").append("</ns1:КодОбр>");
+        }
+        return xml.append("</ns1:").append(root).append(">\n").toString();
+    }
+
+    /**
+     * Writes attributes and content of the tag of the rule, start tag is left open
+     */
+    private void content(StringBuilder xml, int rule, Random random, boolean full) {
+        StringBuilder children = new StringBuilder();
+        for (int i = 0; i < rules.getParamCount(rule); i++) {
+            int param = rules.getParam(rule, i);
+            if (!full && !present(rules.isRequired(param), random)) {
+                continue;
+            }
+            covered.set(param);
+            String path = rules.getPath(param);
+            if (!full && random.nextInt(4) == 0) {
+                for (int n = random.nextInt(2); n >= 0; n--) {
+                    children.append("<ns1:").append(path).append('>').append(escape(value(param, random)))
+                            .append("</ns1:").append(path).append('>');
+                }
+            } else {
+                xml.append(' ').append(path).append("=\"").append(escape(value(param, random))).append('"');
+            }
+        }
+        for (int i = 0; i < rules.getChildCount(rule); i++) {
+            int child = rules.getChild(rule, i);
+            int count = full ? 2 : present(rules.isRequired(child), random) ? 1 + (random.nextInt(4) == 0 ? random.nextInt(3) : 0) : 0;
+            for (int n = 0; n < count; n++) {
+                covered.set(child);
+                children.append("<ns1:").append(rules.getPath(child));
+                content(children, child, random, full);
+                children.append("</ns1:").append(rules.getPath(child)).append('>');
+            }
+        }
+        if (!full && random.nextInt(8) == 0) {
+            children.append("<ns1:Лишний Код=\"").append(random.nextInt(1000)).append("\"><ns1:Текст>")
+                    .append(escape(WORDS[random.nextInt(WORDS.length)])).append("</ns1:Текст></ns1:Лишний>");
+        }
+        xml.append('>').append(children);
+    }
+
+    // Required parts are sometimes missing too, that's what "not found" rows are for
+    private static boolean present(boolean required, Random random) {
+        return random.nextInt(10) < (required ? 9 : 6);
+    }
+
+    private String value(int param, Random random) {
+        if (rules.isDate(param)) {
+            return FIRST_DATE.plusDays(random.nextInt(11000)).toString();
+        }
+        return random.nextInt(3) == 0 ? String.valueOf(1000000000L + random.nextInt(Integer.MAX_VALUE))
+                : WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * Extracts text of the .pdf-file row by row
+     *
+     * @param pdf content of .pdf-file
+     * @return rows of all pages
+     * @throws IOException if content is not a .pdf-file
+     */
+    static List<String> rows(byte[] pdf) throws IOException {
+        PdfReader reader = new PdfReader(pdf);
+        try {
+            List<String> rows = new ArrayList<>();
+            for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                for (String row : PdfTextExtractor.getTextFromPage(reader, page).split("\n")) {
+                    rows.add(row.replace(TODAY, "<today>"));
+                }
+            }
+            return rows;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Compares rows with golden ones
+     *
+     * @return description of the first difference, null if rows are equal
+     */
+    private static String compare(List<String> golden, List<String> rows) {
+        for (int i = 0; i < Math.max(golden.size(), rows.size()); i++) {
+            String expected = i < golden.size() ? golden.get(i) : "<end>", actual = i < rows.size() ? rows.get(i) : "<end>";
+            if (!expected.equals(actual)) {
+                return "row " + (i + 1) + ": expected \"" + expected + "\", got \"" + actual + "\"";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Start point of the gate, exits with 1 if rules are inconsistent or any document differs from golden one
+     *
+     * @param args register type (egrul or egrip), corpus directory, options:
+     *             --count N documents, --seed S, --repeat R timed passes, --record to rewrite golden files,
+     *             --lazy to render lazily read documents
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RenderValidator <egrul|egrip> <corpus dir> [--count N] [--seed S] [--repeat R] [--record] [--lazy]");
+            return;
+        }
+        int count = 50, repeat = 3;
+        long seed = 20171002;
+        boolean record = false, lazy = false;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--count":
+                    count = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--repeat":
+                    repeat = Integer.parseInt(args[++i]);
+                    break;
+                case "--record":
+                    record = true;
+                    break;
+                case "--lazy":
+                    lazy = true;
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        String type = Objects.equals(args[0], "egrip") ? "egrip" : "egrul";
+        RenderValidator validator = forRegister(type, "files/times-new-roman.ttf", lazy);
+        RuleTree rules = validator.rules;
+
+        List<String> problems = checkRules(rules);
+        for (String problem : problems) {
+            System.err.println("RULES " + problem);
+        }
+
+        Path dir = Paths.get(args[1]);
+        Files.createDirectories(dir);
+        List<String> inputs = new ArrayList<>(count);
+        long bytes = 0;
+        for (int i = 0; i < count; i++) {
+            Path input = dir.resolve(String.format("%s-%04d.xml", type, i));
+            byte[] content = validator.generate(seed + i, i == 0).getBytes(StandardCharsets.UTF_8);
+            Files.write(input, content);
+            inputs.add(input.toString());
+            bytes += content.length;
+        }
+        System.err.println("Corpus: " + count + " documents, " + bytes + " bytes, "
+                + validator.covered.cardinality() + " of " + (rules.size() - 1) + " rules covered");
+
+        int failed = 0;
+        for (int pass = 0; pass < Math.max(1, repeat); pass++) {
+            // Only rendering is timed, text extraction and comparison of the first pass are left out
+            long rendering = 0;
+            for (String input : inputs) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+                long start = System.nanoTime();
+                RenderResult result = validator.renderer.render(input, out);
+                rendering += System.nanoTime() - start;
+                if (pass > 0) {
+                    continue;
+                }
+                // First pass is checked, the rest only measure
+                List<String> rows = result.hasOutput() ? rows(out.toByteArray()) : Collections.singletonList(result.getReason());
+                Path golden = Paths.get(input.substring(0, input.length() - 4) + ".txt");
+                if (record) {
+                    Files.write(golden, rows, StandardCharsets.UTF_8);
+                } else if (!Files.exists(golden)) {
+                    failed++;
+                    System.err.println("FAIL " + input + ": no golden file, run with --record");
+                } else {
+                    String difference = compare(Files.readAllLines(golden, StandardCharsets.UTF_8), rows);
+                    if (difference != null) {
+                        failed++;
+                        System.err.println("FAIL " + input + ": " + difference);
+                    }
+                }
+            }
+            double seconds = rendering / 1e9;
+            System.err.printf("Pass %d: %.3f s, %.1f documents/s, %.2f MB/s%n", pass + 1, seconds,
+                    count / seconds, bytes / seconds / (1024 * 1024));
+        }
+
+        System.err.println(record ? "Golden files recorded" : failed + " of " + count + " documents differ from golden files");
+        if (!problems.isEmpty() || failed > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 22:15
+ */
+
+package rrp;
+
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * File handles of long-running workers: caps how many outputs are open at once and counts handles
+ * that were never closed; such handles are closed when their owner is collected
+ */
+final class Resources {
+
+    // Maximum number of output files open at the same time in the whole process
+    static final int MAX_OPEN_OUTPUTS = 256;
+
+    private static final Semaphore outputs = new Semaphore(MAX_OPEN_OUTPUTS, true);
+    private static final Cleaner cleaner = Cleaner.create();
+
+    // Handles opened, closed by their owner, closed after their owner was collected
+    private static final AtomicLong opened = new AtomicLong(), closed = new AtomicLong(), leaked = new AtomicLong();
+    // Outputs that had to wait for a free permit, largest number of outputs open at once
+    private static final AtomicLong waited = new AtomicLong(), peak = new AtomicLong();
+
+    private Resources() {
+    }
+
+    /**
+     * Opens output file, waits while {@link #MAX_OPEN_OUTPUTS} others are open
+     *
+     * @param path path to output file
+     * @return output, permit is returned when it's closed
+     * @throws IOException if file can't be opened or waiting is interrupted
+     */
+    static Output openOutput(Path path) throws IOException {
+        if (!outputs.tryAcquire()) {
+            waited.incrementAndGet();
+            try {
+                outputs.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to open " + path);
+            }
+        }
+        peak.accumulateAndGet(MAX_OPEN_OUTPUTS - outputs.availablePermits(), Math::max);
+        FileOutputStream file;
+        try {
+            file = new FileOutputStream(path.toFile());
+        } catch (IOException | RuntimeException e) {
+            outputs.release();
+            throw e;
+        }
+        return new Output(file);
+    }
+
+    /**
+     * Tracks handle of the owner, handle is closed with {@link Handle#close()} or, if owner is collected first,
+     * by the cleaner and counted as leaked
+     *
+     * @param owner      object holding the handle
+     * @param underlying resource to close, mustn't refer to the owner
+     * @return handle
+     */
+    static Handle track(Object owner, AutoCloseable underlying) {
+        return new Handle(owner, underlying, null);
+    }
+
+    /**
+     * @return handles open now
+     */
+    static long open() {
+        return opened.get() - closed.get() - leaked.get();
+    }
+
+    /**
+     * @return handles closed only after their owner was collected
+     */
+    static long leaked() {
+        return leaked.get();
+    }
+
+    /**
+     * @return summary of all counters
+     */
+    static String metrics() {
+        return "open=" + open() + " opened=" + opened.get() + " leaked=" + leaked.get()
+                + " outputs waited=" + waited.get() + " peak=" + peak.get() + "/" + MAX_OPEN_OUTPUTS;
+    }
+
+    /**
+     * Closing action of one resource, runs once: either from {@link #close()} or from the cleaner
+     */
+    static final class Handle implements AutoCloseable {
+        private final State state;
+        private final Cleaner.Cleanable cleanable;
+
+        private Handle(Object owner, AutoCloseable underlying, Semaphore permits) {
+            state = new State(underlying, permits);
+            opened.incrementAndGet();
+            cleanable = cleaner.register(owner, state);
+        }
+
+        @Override
+        public void close() {
+            state.explicit = true;
+            cleanable.clean();
+        }
+
+        /**
+         * Closing action, it mustn't refer to the owner, otherwise owner is never collected
+         */
+        private static final class State implements Runnable {
+            private final AutoCloseable underlying;
+            private final Semaphore permits;
+            private volatile boolean explicit;
+
+            State(AutoCloseable underlying, Semaphore permits) {
+                this.underlying = underlying;
+                this.permits = permits;
+            }
+
+            @Override
+            public void run() {
+                (explicit ? closed : leaked).incrementAndGet();
+                try {
+                    underlying.close();
+                } catch (Exception e) {
+                    Logger.getLogger(Resources.class.getName()).log(Level.WARNING, "Resource can't be closed", e);
+                } finally {
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+                if (!explicit) {
+                    Logger.getLogger(Resources.class.getName()).log(Level.WARNING, "Resource wasn't closed by its owner");
+                }
+            }
+        }
+    }
+
+    /**
+     * Output file holding one of {@link #MAX_OPEN_OUTPUTS} permits
+     */
+    static final class Output extends FilterOutputStream {
+        private final FileOutputStream file;
+        private final Handle handle;
+
+        private Output(FileOutputStream file) {
+            super(file);
+            this.file = file;
+            handle = new Handle(this, file, outputs);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        /**
+         * Forces written content to the storage device
+         */
+        void sync() throws IOException {
+            file.getChannel().force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                handle.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 13:50
+ */
+
+package rrp;
+
+import java.util.*;
+
+/**
+ * Compiled read-only tree of layout rules stored in flat arrays
+ * Every rule is addressed by int id, {@link #ROOT} is the root; strings are kept once in a shared table
+ * Rules that are the same object in source tree (shared type templates) get one id,
+ * rules of the same type share one set of names they look for
+ */
+final class RuleTree {
+
+    // Id of the root rule
+    static final int ROOT = 0;
+
+    // Flags of the rule
+    private static final byte NODE = 1, REQUIRED = 2, DATE = 4;
+
+    // Interned strings
+    private final String[] strings;
+    // Indexes in strings table of path in .xml, name in .pdf and type name
+    private final int[] path, name, type;
+    private final byte[] flags;
+    // Params of rule are links[first .. first + params), children follow them
+    private final int[] first, params, children;
+    private final int[] links;
+    // Index of the set of local names the rule looks for in the tag
+    private final int[] lookup;
+    private final List<Set<String>> lookups;
+
+    private RuleTree(String[] strings, int[] path, int[] name, int[] type, byte[] flags,
+                     int[] first, int[] params, int[] children, int[] links, int[] lookup, List<Set<String>> lookups) {
+        this.strings = strings;
+        this.path = path;
+        this.name = name;
+        this.type = type;
+        this.flags = flags;
+        this.first = first;
+        this.params = params;
+        this.children = children;
+        this.links = links;
+        this.lookup = lookup;
+        this.lookups = lookups;
+    }
+
+    /**
+     * Compiles tree built by {@link CSVParser}
+     *
+     * @param root root of the tree
+     * @return compiled tree
+     */
+    static RuleTree compile(CSVParser.TreeNode root) {
+        // Rules are numbered breadth-first, so links of every rule are stored together
+        IdentityHashMap<CSVParser.TreeNode, Integer> ids = new IdentityHashMap<>();
+        ArrayList<CSVParser.TreeNode> order = new ArrayList<>();
+        ids.put(root, 0);
+        order.add(root);
+        int linkCount = 0;
+        for (int i = 0; i < order.size(); i++) {
+            CSVParser.TreeNode node = order.get(i);
+            linkCount += node.getParams().size() + node.getChildren().size();
+            for (CSVParser.TreeNode next : node.getParams()) {
+                if (!ids.containsKey(next)) {
+                    ids.put(next, order.size());
+                    order.add(next);
+                }
+            }
+            for (CSVParser.TreeNode next : node.getChildren()) {
+                if (!ids.containsKey(next)) {
+                    ids.put(next, order.size());
+                    order.add(next);
+                }
+            }
+        }
+
+        int size = order.size();
+        HashMap<String, Integer> table = new HashMap<>();
+        ArrayList<String> strings = new ArrayList<>();
+        int[] path = new int[size], name = new int[size], type = new int[size];
+        byte[] flags = new byte[size];
+        int[] first = new int[size], params = new int[size], children = new int[size];
+        int[] links = new int[linkCount];
+        int link = 0;
+        // Rules of one type share their params list, so lookup set is built once per type
+        IdentityHashMap<List<CSVParser.TreeNode>, Integer> memo = new IdentityHashMap<>();
+        ArrayList<Set<String>> lookups = new ArrayList<>();
+        int[] lookup = new int[size];
+        for (int i = 0; i < size; i++) {
+            CSVParser.TreeNode node = order.get(i);
+            path[i] = intern(node.getPath(), table, strings);
+            name[i] = intern(node.getName(), table, strings);
+            type[i] = intern(node.getType(), table, strings);
+            flags[i] = (byte) ((node.isNode() ? NODE : 0) | (node.isRequired() ? REQUIRED : 0)
+                    | (node.getType().contains("date") ? DATE : 0));
+            first[i] = link;
+            params[i] = node.getParams().size();
+            children[i] = node.getChildren().size();
+            for (CSVParser.TreeNode next : node.getParams()) {
+                links[link++] = ids.get(next);
+            }
+            for (CSVParser.TreeNode next : node.getChildren()) {
+                links[link++] = ids.get(next);
+            }
+
+            Integer shared = memo.get(node.getParams());
+            if (shared == null) {
+                HashSet<String> names = new HashSet<>();
+                for (CSVParser.TreeNode next : node.getParams()) {
+                    names.add(strings.get(intern(next.getPath(), table, strings)));
+                }
+                for (CSVParser.TreeNode next : node.getChildren()) {
+                    names.add(strings.get(intern(next.getPath(), table, strings)));
+                }
+                shared = lookups.size();
+                lookups.add(Collections.unmodifiableSet(names));
+                memo.put(node.getParams(), shared);
+            }
+            lookup[i] = shared;
+        }
+        return new RuleTree(strings.toArray(new String[0]), path, name, type, flags, first, params, children, links,
+                lookup, lookups);
+    }
+
+    private static int intern(String value, HashMap<String, Integer> table, ArrayList<String> strings) {
+        Integer id = table.get(value);
+        if (id == null) {
+            id = strings.size();
+            table.put(value, id);
+            strings.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * @return number of distinct rules
+     */
+    int size() {
+        return flags.length;
+    }
+
+    String getPath(int rule) {
+        return strings[path[rule]];
+    }
+
+    String getName(int rule) {
+        return strings[name[rule]];
+    }
+
+    String getType(int rule) {
+        return strings[type[rule]];
+    }
+
+    boolean isNode(int rule) {
+        return (flags[rule] & NODE) != 0;
+    }
+
+    boolean isRequired(int rule) {
+        return (flags[rule] & REQUIRED) != 0;
+    }
+
+    /**
+     * @param rule rule id
+     * @return true if value of the rule is date to be formatted
+     */
+    boolean isDate(int rule) {
+        return (flags[rule] & DATE) != 0;
+    }
+
+    int getParamCount(int rule) {
+        return params[rule];
+    }
+
+    /**
+     * @param rule rule id
+     * @param i    index of the param
+     * @return id of i-th param of the rule
+     */
+    int getParam(int rule, int i) {
+        return links[first[rule] + i];
+    }
+
+    /**
+     * @param rule      rule id
+     * @param localName local name of tag or attribute
+     * @return true if the rule has param or child with this name
+     */
+    boolean looksFor(int rule, String localName) {
+        return lookups.get(lookup[rule]).contains(localName);
+    }
+
+    int getChildCount(int rule) {
+        return children[rule];
+    }
+
+    /**
+     * @param rule rule id
+     * @param i    index of the child
+     * @return id of i-th child of the rule
+     */
+    int getChild(int rule, int i) {
+        return links[first[rule] + params[rule] + i];
+    }
+}
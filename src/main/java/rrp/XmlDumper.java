@@ -0,0 +1,324 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 11:40
+ */
+
+package rrp;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Dumps .xml-response as indented text or as JSON lines (one object per element)
+ * Works either on DOM tree or directly on StAX stream, output goes through one buffered writer
+ */
+class XmlDumper {
+
+    enum Format {
+        TEXT, JSON
+    }
+
+    private final Writer out;
+    private final Format format;
+
+    /**
+     * Constructor with output and its format
+     *
+     * @param out    output, buffered by caller or not
+     * @param format dump format
+     */
+    XmlDumper(Writer out, Format format) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+        this.format = format;
+    }
+
+    /**
+     * Dumps node and all its descendants
+     *
+     * @param node node
+     * @throws IOException if output can't be written
+     */
+    void dump(Node node) throws IOException {
+        if (node.getNodeType() == Node.DOCUMENT_NODE) {
+            node = ((Document) node).getDocumentElement();
+        }
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            dumpElement(node, "", 0);
+        } else {
+            // Attributes and texts selected by filter
+            writeLine(0, node.getNodeName(), "/" + node.getNodeName(), new ArrayList<>(), node.getNodeValue());
+        }
+        out.flush();
+    }
+
+    /**
+     * Dumps all selected nodes
+     *
+     * @param nodes nodes selected by XPath filter
+     * @throws IOException if output can't be written
+     */
+    void dump(NodeList nodes) throws IOException {
+        for (int i = 0; i < nodes.getLength(); i++) {
+            dump(nodes.item(i));
+        }
+    }
+
+    private void dumpElement(Node current, String parentPath, int level) throws IOException {
+        String path = parentPath + '/' + current.getNodeName();
+        NamedNodeMap attributes = current.getAttributes();
+        List<String[]> attrs = new ArrayList<>(attributes.getLength());
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attrib = attributes.item(i);
+            attrs.add(new String[]{attrib.getNodeName(), attrib.getNodeValue()});
+        }
+
+        // Only direct text of the element, nested texts belong to children
+        String text = null;
+        NodeList children = current.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                text = text == null ? child.getNodeValue() : text + child.getNodeValue();
+            }
+        }
+        writeLine(level, current.getNodeName(), path, attrs, text);
+
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                dumpElement(child, path, level + 1);
+            }
+        }
+    }
+
+    /**
+     * Dumps .xml read from the stream without building a tree
+     *
+     * @param in         .xml input
+     * @param pathFilter only elements under this path of local names (like "/Response/СвЮЛ") are dumped, null for all
+     * @throws IOException if input can't be read or output can't be written
+     */
+    void dumpStream(InputStream in, String pathFilter) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            // Element is written when its first child or its end is reached, so its text is already known
+            StringBuilder path = new StringBuilder(), localPath = new StringBuilder();
+            ArrayList<Integer> pathLengths = new ArrayList<>(), localLengths = new ArrayList<>();
+            String pendingName = null, pendingPath = null;
+            List<String[]> pendingAttrs = null;
+            StringBuilder pendingText = new StringBuilder();
+            int level = -1, pendingLevel = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (pendingName != null) {
+                        writeLine(pendingLevel, pendingName, pendingPath, pendingAttrs, text(pendingText));
+                        pendingName = null;
+                    }
+                    level++;
+                    pathLengths.add(path.length());
+                    localLengths.add(localPath.length());
+                    String name = reader.getPrefix() == null || reader.getPrefix().isEmpty()
+                            ? reader.getLocalName() : reader.getPrefix() + ':' + reader.getLocalName();
+                    path.append('/').append(name);
+                    localPath.append('/').append(reader.getLocalName());
+                    if (matches(localPath, pathFilter)) {
+                        pendingName = name;
+                        pendingPath = path.toString();
+                        pendingLevel = level;
+                        pendingAttrs = new ArrayList<>(reader.getAttributeCount());
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            String prefix = reader.getAttributePrefix(i);
+                            String attrName = prefix == null || prefix.isEmpty()
+                                    ? reader.getAttributeLocalName(i) : prefix + ':' + reader.getAttributeLocalName(i);
+                            pendingAttrs.add(new String[]{attrName, reader.getAttributeValue(i)});
+                        }
+                        pendingText.setLength(0);
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (pendingName != null) {
+                        pendingText.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (pendingName != null) {
+                        writeLine(pendingLevel, pendingName, pendingPath, pendingAttrs, text(pendingText));
+                        pendingName = null;
+                    }
+                    path.setLength(pathLengths.remove(pathLengths.size() - 1));
+                    localPath.setLength(localLengths.remove(localLengths.size() - 1));
+                    level--;
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed .xml", e);
+        }
+        out.flush();
+    }
+
+    private static boolean matches(CharSequence localPath, String pathFilter) {
+        if (pathFilter == null) {
+            return true;
+        }
+        int n = pathFilter.length();
+        if (localPath.length() < n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (localPath.charAt(i) != pathFilter.charAt(i)) {
+                return false;
+            }
+        }
+        return localPath.length() == n || localPath.charAt(n) == '/';
+    }
+
+    private static String text(StringBuilder text) {
+        return text.length() == 0 ? null : text.toString();
+    }
+
+    /**
+     * Writes one element in selected format
+     */
+    private void writeLine(int level, String name, String path, List<String[]> attrs, String text) throws IOException {
+        if (text != null && text.trim().isEmpty()) {
+            text = null;
+        }
+        if (format == Format.TEXT) {
+            for (int i = 0; i < level; i++) {
+                out.write("  ");
+            }
+            out.write(name);
+            out.write('[');
+            for (String[] attr : attrs) {
+                out.write(attr[0]);
+                out.write(": ");
+                out.write(attr[1]);
+                out.write(", ");
+            }
+            out.write(']');
+            if (text != null) {
+                out.write(" ");
+                out.write(text.trim());
+            }
+        } else {
+            out.write("{\"depth\": ");
+            out.write(String.valueOf(level));
+            out.write(", \"path\": ");
+            writeJsonString(path);
+            out.write(", \"attrs\": {");
+            for (int i = 0; i < attrs.size(); i++) {
+                if (i > 0) {
+                    out.write(", ");
+                }
+                writeJsonString(attrs.get(i)[0]);
+                out.write(": ");
+                writeJsonString(attrs.get(i)[1]);
+            }
+            out.write('}');
+            if (text != null) {
+                out.write(", \"text\": ");
+                writeJsonString(text.trim());
+            }
+            out.write('}');
+        }
+        out.write('\n');
+    }
+
+    private void writeJsonString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                out.write('\\');
+                out.write(ch);
+            } else if (ch == '\n') {
+                out.write("\\n");
+            } else if (ch == '\r') {
+                out.write("\\r");
+            } else if (ch == '\t') {
+                out.write("\\t");
+            } else if (ch < 0x20) {
+                out.write(String.format("\\u%04x", (int) ch));
+            } else {
+                out.write(ch);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Start point for inspection of responses
+     *
+     * @param args [--json] [--stream] [--filter expression] path to .xml; filter is XPath for tree mode
+     *             (prefixes are taken from root element) and path of local names for stream mode
+     */
+    public static void main(String[] args) throws IOException {
+        Format format = Format.TEXT;
+        boolean stream = false;
+        String filter = null, pathToXmlFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--json")) {
+                format = Format.JSON;
+            } else if (args[i].equals("--stream")) {
+                stream = true;
+            } else if (args[i].equals("--filter") && i + 1 < args.length) {
+                filter = args[++i];
+            } else {
+                pathToXmlFile = args[i];
+            }
+        }
+        if (pathToXmlFile == null) {
+            System.err.println("Usage: XmlDumper [--json] [--stream] [--filter expression] <input.xml>");
+            return;
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16);
+        XmlDumper dumper = new XmlDumper(out, format);
+        if (stream) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(pathToXmlFile), 1 << 16)) {
+                dumper.dumpStream(in, filter);
+            }
+            return;
+        }
+
+        Document doc = new IterParser(new HashMap<>()).createXmlDocument(pathToXmlFile);
+        if (doc == null) {
+            return;
+        }
+        if (filter == null) {
+            dumper.dump(doc);
+        } else {
+            // Prefixes of the filter are the ones declared on root element
+            HashMap<String, String> uriMap = new HashMap<>();
+            NamedNodeMap attributes = doc.getDocumentElement().getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attrib = attributes.item(i);
+                if ("xmlns".equals(attrib.getPrefix())) {
+                    uriMap.put(attrib.getLocalName(), attrib.getNodeValue());
+                }
+            }
+            NodeList nodes = new IterParser(uriMap).getNode(doc, filter);
+            if (nodes != null) {
+                dumper.dump(nodes);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 11:05
+ */
+
+package rrp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Caps applied to every parsed .xml-response, so one bad input can't take memory or time of the whole worker
+ */
+final class XmlLimits {
+
+    // Limits used by default: responses are far below these values
+    static final XmlLimits DEFAULT = new XmlLimits(64L * 1024 * 1024, 64, 256);
+
+    // Maximum size of the input in bytes
+    final long maxBytes;
+    // Maximum depth of element nesting
+    final int maxDepth;
+    // Maximum number of attributes of one element
+    final int maxAttributes;
+
+    /**
+     * Constructor with all limits
+     *
+     * @param maxBytes      maximum size of the input in bytes
+     * @param maxDepth      maximum depth of element nesting
+     * @param maxAttributes maximum number of attributes of one element
+     */
+    XmlLimits(long maxBytes, int maxDepth, int maxAttributes) {
+        this.maxBytes = maxBytes;
+        this.maxDepth = maxDepth;
+        this.maxAttributes = maxAttributes;
+    }
+
+    /**
+     * Wraps stream so reading fails as soon as size limit is exceeded
+     *
+     * @param in input stream
+     * @return limited stream
+     */
+    InputStream limit(InputStream in) {
+        return new FilterInputStream(in) {
+            private long read;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    count(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    count(n);
+                }
+                return n;
+            }
+
+            private void count(int n) throws IOException {
+                read += n;
+                if (read > maxBytes) {
+                    throw new IOException("Input exceeds " + maxBytes + " bytes");
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof XmlLimits)) {
+            return false;
+        }
+        XmlLimits other = (XmlLimits) o;
+        return maxBytes == other.maxBytes && maxDepth == other.maxDepth && maxAttributes == other.maxAttributes;
+    }
+
+    @Override
+    public int hashCode() {
+        return (Long.hashCode(maxBytes) * 31 + maxDepth) * 31 + maxAttributes;
+    }
+
+    @Override
+    public String toString() {
+        return "XmlLimits{bytes=" + maxBytes + ", depth=" + maxDepth + ", attributes=" + maxAttributes + "}";
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 16:40
+ */
+
+package rrp;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.namespace.QName;
+import java.util.*;
+
+/**
+ * Set of element and attribute paths that layout rules can read
+ * Built from {@link RuleTree}, used as SAX filter so everything else is dropped while parsing, before tree is built
+ */
+final class XmlProjection {
+
+    // Projections already built for rules, rebuilt automatically when rules are reloaded
+    private static final Cache projections = new Cache();
+
+    /**
+     * Projections of one sequence of rules, trees are held only weakly, so reloaded rules drop their projections
+     */
+    private static final class Cache {
+        // Caches of longer sequences by the next tree
+        final WeakHashMap<RuleTree, Cache> next = new WeakHashMap<>();
+        // Projections of this sequence by response element and extra paths
+        final HashMap<List<Object>, XmlProjection> built = new HashMap<>();
+    }
+
+    /**
+     * What is kept inside one element
+     */
+    private static final class Step {
+        // Element that is kept with everything inside it
+        static final Step ALL = new Step();
+        // Element around the response element, kept without attributes and text until the response is found
+        static final Step WRAPPER = new Step();
+
+        // Kept child elements by local name
+        final HashMap<String, Step> elements = new HashMap<>();
+        // Kept attributes by local name
+        final HashSet<String> attributes = new HashSet<>();
+
+        Step copy() {
+            Step copy = new Step();
+            copy.elements.putAll(elements);
+            copy.attributes.addAll(attributes);
+            return copy;
+        }
+    }
+
+    // Response element the rules start from, it may be wrapped into other elements (SOAP envelope)
+    private final QName response;
+    // What is kept inside response element, response element itself is always kept
+    private final Step root;
+
+    private XmlProjection(QName response, Step root) {
+        this.response = response;
+        this.root = root;
+    }
+
+    /**
+     * Returns projection of the rules, it's built once per rules and extra paths
+     *
+     * @param rules      layout structure tree
+     * @param response   response element the rules start from, at any depth of the document
+     * @param extraPaths paths read besides the rules (header values), relative to response element:
+     *                   local names separated by '/', attribute is marked with '@' like "СвЮЛ/@ОГРН"
+     * @return projection
+     */
+    static XmlProjection forRules(RuleTree rules, QName response, String... extraPaths) {
+        return forRules(Collections.singletonList(rules), response, extraPaths);
+    }
+
+    /**
+     * Returns union of projections of several layouts of the same document, so it's parsed once for all of them
+     *
+     * @param rules      layout structure trees, at least one
+     * @param response   response element the rules start from, at any depth of the document
+     * @param extraPaths paths read besides the rules, like in {@link #forRules(RuleTree, QName, String...)}
+     * @return projection
+     */
+    static XmlProjection forRules(List<RuleTree> rules, QName response, String... extraPaths) {
+        List<Object> key = new ArrayList<>();
+        key.add(response);
+        key.addAll(Arrays.asList(extraPaths));
+        synchronized (projections) {
+            Cache cache = projections;
+            for (RuleTree tree : rules) {
+                cache = cache.next.computeIfAbsent(tree, added -> new Cache());
+            }
+            return cache.built.computeIfAbsent(key, built -> build(rules, response, extraPaths));
+        }
+    }
+
+    private static XmlProjection build(List<RuleTree> rules, QName response, String[] extraPaths) {
+        Step root = step(rules.get(0), RuleTree.ROOT, new HashMap<>()).copy();
+        for (RuleTree other : rules.subList(1, rules.size())) {
+            merge(root, step(other, RuleTree.ROOT, new HashMap<>()));
+        }
+        for (String path : extraPaths) {
+            add(root, path.split("/"), 0);
+        }
+        return new XmlProjection(response, root);
+    }
+
+    /**
+     * Builds step of the rule, rules shared by several parents share their step
+     * Params may be both attributes and tags, tags of params are kept whole as their text content is read
+     */
+    private static Step step(RuleTree rules, int rule, HashMap<Integer, Step> memo) {
+        Step step = memo.get(rule);
+        if (step == null) {
+            step = new Step();
+            memo.put(rule, step);
+            for (int i = 0; i < rules.getParamCount(rule); i++) {
+                String path = rules.getPath(rules.getParam(rule, i));
+                step.attributes.add(path);
+                step.elements.put(path, Step.ALL);
+            }
+            for (int i = 0; i < rules.getChildCount(rule); i++) {
+                int child = rules.getChild(rule, i);
+                if (step.elements.get(rules.getPath(child)) != Step.ALL) {
+                    step.elements.put(rules.getPath(child), step(rules, child, memo));
+                }
+            }
+        }
+        return step;
+    }
+
+    /**
+     * Adds everything kept by the step to the owned step, steps below are copied before they are changed
+     */
+    private static void merge(Step owned, Step step) {
+        owned.attributes.addAll(step.attributes);
+        for (Map.Entry<String, Step> element : step.elements.entrySet()) {
+            Step existing = owned.elements.get(element.getKey());
+            if (existing == null || element.getValue() == Step.ALL) {
+                owned.elements.put(element.getKey(), element.getValue());
+            } else if (existing != Step.ALL && existing != element.getValue()) {
+                Step copy = existing.copy();
+                merge(copy, element.getValue());
+                owned.elements.put(element.getKey(), copy);
+            }
+        }
+    }
+
+    /**
+     * Adds extra path, steps on the way are copied as they may be shared with other rules
+     */
+    private static void add(Step step, String[] path, int i) {
+        if (path[i].startsWith("@")) {
+            step.attributes.add(path[i].substring(1));
+        } else if (i == path.length - 1) {
+            step.elements.put(path[i], Step.ALL);
+        } else {
+            Step next = step.elements.get(path[i]);
+            if (next != Step.ALL) {
+                next = next == null ? new Step() : next.copy();
+                step.elements.put(path[i], next);
+                add(next, path, i + 1);
+            }
+        }
+    }
+
+    /**
+     * Creates filter that passes only projected content of the document to its content handler
+     *
+     * @param parent reader of the document
+     * @return filter
+     */
+    XMLFilterImpl filter(XMLReader parent) {
+        return new Filter(parent, response, root);
+    }
+
+    /**
+     * Drops elements that are out of projection together with their content and namespace declarations
+     */
+    private static final class Filter extends XMLFilterImpl {
+        private final QName response;
+        private final Step root;
+        // Steps of open kept elements
+        private final ArrayDeque<Step> steps = new ArrayDeque<>();
+        // Prefixes declared on open kept elements, they are ended after the element
+        private final ArrayDeque<List<String>> prefixes = new ArrayDeque<>();
+        // Namespace declarations that come before the next element
+        private final ArrayList<String[]> pending = new ArrayList<>();
+        // Depth inside dropped element, 0 if current element is kept
+        private int dropped;
+
+        Filter(XMLReader parent, QName response, Step root) {
+            super(parent);
+            this.response = response;
+            this.root = root;
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            if (dropped == 0) {
+                pending.add(new String[]{prefix, uri});
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) {
+            // Ended together with element that declared it
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            if (dropped > 0) {
+                dropped++;
+                return;
+            }
+            Step step;
+            if (steps.isEmpty() || steps.peek() == Step.WRAPPER) {
+                // Elements are passed through until the response, so it's found at any depth like by "//" in XPath
+                boolean found = localName.equals(response.getLocalPart()) && uri.equals(response.getNamespaceURI());
+                step = found ? root : Step.WRAPPER;
+            } else {
+                step = steps.peek() == Step.ALL ? Step.ALL : steps.peek().elements.get(localName);
+            }
+            if (step == null) {
+                pending.clear();
+                dropped = 1;
+                return;
+            }
+
+            ArrayList<String> declared = new ArrayList<>(pending.size());
+            for (String[] mapping : pending) {
+                super.startPrefixMapping(mapping[0], mapping[1]);
+                declared.add(mapping[0]);
+            }
+            pending.clear();
+            prefixes.push(declared);
+            steps.push(step);
+
+            if (step != Step.ALL) {
+                AttributesImpl kept = new AttributesImpl();
+                for (int i = 0; i < atts.getLength(); i++) {
+                    if (step.attributes.contains(atts.getLocalName(i))) {
+                        kept.addAttribute(atts.getURI(i), atts.getLocalName(i), atts.getQName(i), atts.getType(i), atts.getValue(i));
+                    }
+                }
+                atts = kept;
+            }
+            super.startElement(uri, localName, qName, atts);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (dropped > 0) {
+                dropped--;
+                return;
+            }
+            steps.pop();
+            super.endElement(uri, localName, qName);
+            for (String prefix : prefixes.pop()) {
+                super.endPrefixMapping(prefix);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (dropped == 0 && steps.peek() != Step.WRAPPER) {
+                super.characters(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            if (dropped == 0 && steps.peek() != Step.WRAPPER) {
+                super.ignorableWhitespace(ch, start, length);
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            if (dropped == 0) {
+                super.processingInstruction(target, data);
+            }
+        }
+    }
+}
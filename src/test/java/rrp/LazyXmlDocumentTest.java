@@ -0,0 +1,192 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 23:40
+ */
+
+package rrp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lazy documents must give the same tree as the DOM parser once they are expanded, and reject the same inputs
+ */
+class LazyXmlDocumentTest {
+
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+    // Small limits, so they are easy to exceed
+    private static final XmlLimits LIMITS = new XmlLimits(1 << 20, 4, 3);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void predefinedAndNumericEntities() throws IOException {
+        assertSame(DECLARATION + "<a t=\"&lt;&gt;&amp;&quot;&apos;\">x &lt; y &#1046;&#x416;&#x1F600; &amp;amp;<b/>&gt;</a>");
+    }
+
+    @Test
+    void cdataAndComments() throws IOException {
+        assertSame(DECLARATION + "<a><b>до<![CDATA[<не тег> & ]]>после<!-- комментарий -->конец</b>"
+                + "<c><![CDATA[]]></c><?pi data?><d> <!-- --> </d></a>");
+    }
+
+    @Test
+    void namespaces() throws IOException {
+        assertSame(DECLARATION + "<r xmlns=\"urn:default\" xmlns:p=\"urn:p\"><p:a p:x=\"1\" y=\"2\"><b/>"
+                + "<c xmlns=\"\"><d xmlns:p=\"urn:other\" p:z=\"3\"/></c></p:a><e xml:lang=\"ru\"/></r>");
+    }
+
+    @Test
+    void byteOrderMarkAndDeclaredEncoding() throws IOException {
+        String xml = "<a Имя=\"Значение\">Текст<b>ещё</b></a>";
+        byte[] bom = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+        byte[] utf8 = (DECLARATION + xml).getBytes(StandardCharsets.UTF_8);
+        byte[] withBom = new byte[bom.length + utf8.length];
+        System.arraycopy(bom, 0, withBom, 0, bom.length);
+        System.arraycopy(utf8, 0, withBom, bom.length, utf8.length);
+        assertSame(withBom);
+
+        Charset cp1251 = Charset.forName("windows-1251");
+        assertSame(("<?xml version=\"1.0\" encoding=\"windows-1251\"?>" + xml).getBytes(cp1251));
+    }
+
+    @Test
+    void lineEnds() throws IOException {
+        assertSame(DECLARATION.replace("\n", "\r\n") + "<a t=\"1\r\n2\r3\n4&#13;5\">\r\n<b>x\r\ny\rz</b>\r\n<c><![CDATA[p\r\nq\rr]]></c>\r\n</a>\r\n");
+    }
+
+    @Test
+    void emptyAndWhitespaceContent() throws IOException {
+        assertSame(DECLARATION + "<a><b></b><c/><d>  </d><e>\n<f></f>\n</e> текст <g t='1'></g></a>");
+    }
+
+    @Test
+    void malformedInputIsRejectedByBoth() throws IOException {
+        assertRejected(DECLARATION + "<a><b></a></b>");
+        assertRejected(DECLARATION + "<a><b></b>");
+        assertRejected(DECLARATION + "<a/><b/>");
+        assertRejected(DECLARATION + "<!DOCTYPE a><a/>");
+        assertRejected(DECLARATION + "<a><b>&nbsp;</b></a>");
+        assertRejected(DECLARATION + "<a><b t=\"&bad;\"/></a>");
+        assertRejected(DECLARATION + "<a><b>&#xD800;</b></a>");
+    }
+
+    @Test
+    void limitsAreAppliedByBoth() throws IOException {
+        assertSame(DECLARATION + "<a><b><c><d>глубина 4</d></c></b></a>");
+        assertRejected(DECLARATION + "<a><b><c><d><e>глубина 5</e></d></c></b></a>");
+        assertRejected(DECLARATION + "<a><b><c><d><e/></d></c></b></a>");
+        assertSame(DECLARATION + "<a><b x=\"1\" y=\"2\" z=\"3\"/></a>");
+        assertRejected(DECLARATION + "<a><b w=\"0\" x=\"1\" y=\"2\" z=\"3\"/></a>");
+    }
+
+    @Test
+    void findsWrappedElementWithoutExpandingIt() throws IOException {
+        Document doc = IterParser.forCurrentThread(new HashMap<>(), LIMITS).createLazyDocument(write(
+                (DECLARATION + "<s:E xmlns:s=\"urn:s\"><s:H><r/></s:H><s:B><n:r xmlns:n=\"urn:n\"><c/></n:r></s:B></s:E>")
+                        .getBytes(StandardCharsets.UTF_8)));
+
+        Node found = LazyXmlDocument.find(doc, new QName("urn:n", "r"));
+        assertNotNull(found);
+        assertEquals("s:B", found.getParentNode().getNodeName());
+        assertFalse(found.hasChildNodes(), "found element isn't expanded");
+        assertNull(LazyXmlDocument.find(doc, new QName("urn:n", "missing")));
+    }
+
+    private void assertSame(String xml) throws IOException {
+        assertSame(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void assertSame(byte[] xml) throws IOException {
+        String path = write(xml);
+        Document dom = IterParser.forCurrentThread(new HashMap<>(), LIMITS).createXmlDocument(path);
+        Document lazy = lazy(path);
+        assertNotNull(dom, "DOM parser accepts the input");
+        assertNotNull(lazy, "lazy parser accepts the input");
+        assertEquals(canonical(dom.getDocumentElement()), canonical(lazy.getDocumentElement()));
+    }
+
+    private void assertRejected(String xml) throws IOException {
+        String path = write(xml.getBytes(StandardCharsets.UTF_8));
+        assertNull(IterParser.forCurrentThread(new HashMap<>(), LIMITS).createXmlDocument(path), "DOM parser rejects " + xml);
+        assertNull(lazy(path), "lazy parser rejects " + xml);
+    }
+
+    /**
+     * Parses and expands lazy document, null if it's rejected either while it's indexed or while it's expanded
+     */
+    private static Document lazy(String path) {
+        Document doc = IterParser.forCurrentThread(new HashMap<>(), LIMITS).createLazyDocument(path);
+        if (doc == null) {
+            return null;
+        }
+        try {
+            LazyXmlDocument.expandAll(doc.getDocumentElement());
+            return doc;
+        } catch (LazyXmlDocument.MalformedXmlException e) {
+            return null;
+        }
+    }
+
+    private String write(byte[] xml) throws IOException {
+        Path file = Files.createTempFile(dir, "input", ".xml");
+        Files.write(file, xml);
+        return file.toString();
+    }
+
+    /**
+     * Writes element the way both parsers agree on: comments and processing instructions are skipped,
+     * adjacent text and CDATA are joined, whitespace between child elements is dropped
+     */
+    private static String canonical(Node element) {
+        StringBuilder out = new StringBuilder("{").append(element.getNamespaceURI()).append('}').append(element.getLocalName());
+        TreeMap<String, String> attributes = new TreeMap<>();
+        NamedNodeMap map = element.getAttributes();
+        for (int i = 0; i < map.getLength(); i++) {
+            Attr attribute = (Attr) map.item(i);
+            attributes.put("{" + attribute.getNamespaceURI() + "}" + attribute.getName(), attribute.getValue());
+        }
+        out.append(attributes).append('[');
+
+        boolean hasElements = false;
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            hasElements |= child.getNodeType() == Node.ELEMENT_NODE;
+        }
+        StringBuilder text = new StringBuilder();
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                text.append(child.getNodeValue());
+            } else if (child.getNodeType() == Node.ELEMENT_NODE) {
+                appendText(out, text, hasElements);
+                out.append(canonical(child));
+            }
+        }
+        appendText(out, text, hasElements);
+        return out.append(']').toString();
+    }
+
+    private static void appendText(StringBuilder out, StringBuilder text, boolean hasElements) {
+        if (text.length() > 0 && !(hasElements && text.toString().trim().isEmpty())) {
+            out.append('"').append(text).append('"');
+        }
+        text.setLength(0);
+    }
+}
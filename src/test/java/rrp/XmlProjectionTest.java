@@ -0,0 +1,127 @@
+/**
+ * Created by isuca in work catalogue
+ *
+ * @date 19-Oct-26
+ * @time 23:10
+ */
+
+package rrp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XmlProjectionTest {
+
+    private static final String NS = "urn://x-artefacts-fns-vipul-tosmv-ru/311-14/4.0.5";
+    private static final QName RESPONSE = new QName(NS, "FNSVipULResponse");
+    private static final String CSV = "1,СвЮЛ,Сведения о юридическом лице,О,С,\n"
+            + "1.1,ОГРН,ОГРН,О,А,\n"
+            + "1.2,СвНаимЮЛ,Наименование,О,С,\n"
+            + "1.2.1,НаимЮЛПолн,Полное наименование,О,А,\n";
+    private static final String RESPONSE_XML = "<ns1:FNSVipULResponse xmlns:ns1=\"" + NS + "\" ИдДок=\"42\" Лишний=\"1\">"
+            + "<ns1:СвЮЛ ОГРН=\"1027700132195\" КПП=\"773601001\">"
+            + "<ns1:СвНаимЮЛ НаимЮЛПолн=\"ОБЩЕСТВО\"/><ns1:СвАдресЮЛ Индекс=\"123\"/>"
+            + "</ns1:СвЮЛ></ns1:FNSVipULResponse>";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepsOnlyWhatRulesRead() throws IOException {
+        Element response = response(parse("plain.xml", RESPONSE_XML));
+
+        assertEquals("42", response.getAttribute("ИдДок"));
+        assertFalse(response.hasAttribute("Лишний"));
+        Element company = (Element) response.getElementsByTagNameNS(NS, "СвЮЛ").item(0);
+        assertEquals("1027700132195", company.getAttribute("ОГРН"));
+        assertFalse(company.hasAttribute("КПП"));
+        assertEquals(1, company.getElementsByTagNameNS(NS, "СвНаимЮЛ").getLength());
+        assertEquals(0, company.getElementsByTagNameNS(NS, "СвАдресЮЛ").getLength());
+    }
+
+    @Test
+    void findsResponseWrappedIntoEnvelope() throws IOException {
+        String wrapped = "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                + "<s:Header><h:Id xmlns:h=\"urn:h\" Значение=\"1\">текст заголовка</h:Id></s:Header>"
+                + "<s:Body>\n  " + RESPONSE_XML + "\n</s:Body></s:Envelope>";
+        Document plainDoc = parse("plain.xml", RESPONSE_XML), wrappedDoc = parse("wrapped.xml", wrapped);
+
+        assertTrue(response(plainDoc).isEqualNode(response(wrappedDoc)));
+        assertEquals("", wrappedDoc.getDocumentElement().getTextContent().replace(
+                response(wrappedDoc).getTextContent(), ""), "text around response is dropped");
+        Map<String, String> namespaces = new HashMap<>();
+        namespaces.put("ns1", NS);
+        assertEquals("1027700132195", IterParser.forCurrentThread(namespaces)
+                .getNodeValue(wrappedDoc, "//ns1:FNSVipULResponse/ns1:СвЮЛ/@ОГРН"));
+    }
+
+    @Test
+    void dropsEverythingWithoutResponse() throws IOException {
+        Document doc = parse("other.xml", "<a><b x=\"1\">текст</b></a>");
+
+        assertEquals(0, doc.getElementsByTagNameNS(NS, "FNSVipULResponse").getLength());
+        assertEquals("", doc.getDocumentElement().getTextContent());
+    }
+
+    @Test
+    void doesNotKeepRulesOfOtherLayouts() throws IOException, InterruptedException {
+        RuleTree first = compile(), second = compile();
+        XmlProjection.forRules(Arrays.asList(first, second), RESPONSE);
+        WeakReference<RuleTree> collected = new WeakReference<>(second);
+        second = null;
+        for (int i = 0; i < 100 && collected.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(collected.get(), "projection cache of the first rules doesn't hold the second ones");
+        Reference.reachabilityFence(first);
+    }
+
+    /**
+     * Compiles rules bypassing the cache of {@link CSVParser}, so nothing else holds them
+     */
+    private RuleTree compile() throws IOException {
+        Path csv = dir.resolve("layout.csv");
+        Files.write(csv, CSV.getBytes(StandardCharsets.UTF_8));
+        try (CSVParser parser = new CSVParser(csv.toString(), dir.resolve("layout.json").toString())) {
+            return RuleTree.compile(parser.convertFromCSV());
+        }
+    }
+
+    private Document parse(String name, String xml) throws IOException {
+        Path csv = dir.resolve("rules.csv");
+        if (!Files.exists(csv)) {
+            Files.write(csv, CSV.getBytes(StandardCharsets.UTF_8));
+        }
+        RuleTree rules = CSVParser.loadRules(csv.toString(), dir.resolve("rules.json").toString());
+        Path input = dir.resolve(name);
+        Files.write(input, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + xml).getBytes(StandardCharsets.UTF_8));
+        Document doc = IterParser.forCurrentThread(new HashMap<>())
+                .createProjectedDocument(input.toString(), XmlProjection.forRules(rules, RESPONSE, "@ИдДок"));
+        assertNotNull(doc, name + " is parsed");
+        return doc;
+    }
+
+    private static Element response(Document doc) {
+        NodeList responses = doc.getElementsByTagNameNS(NS, "FNSVipULResponse");
+        assertEquals(1, responses.getLength());
+        return (Element) responses.item(0);
+    }
+}